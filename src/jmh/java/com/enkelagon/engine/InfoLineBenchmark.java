@@ -0,0 +1,56 @@
+package com.enkelagon.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing UCI "info" lines as Stockfish emits them during analysis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InfoLineBenchmark {
+
+    private static final String SHORT_LINE =
+            "info depth 5 seldepth 6 multipv 1 score cp 31 nodes 1213 nps 606500 hashfull 0 tbhits 0 time 2 pv e2e4 e7e5";
+
+    private static final String LONG_LINE =
+            "info depth 24 seldepth 33 multipv 1 score cp 34 wdl 62 913 25 nodes 2749113 nps 1374556 "
+                    + "hashfull 879 tbhits 0 time 2000 pv e2e4 e7e5 g1f3 b8c6 f1b5 g8f6 e1g1 f6e4 f1e1 e4d6 "
+                    + "f3e5 f8e7 b5f1 c6e5 e1e5 e8g8 d2d4 e7f6 e5e1 f8e8 c2c3 e8e1 d1e1 d6f5";
+
+    private static final String MATE_LINE =
+            "info depth 12 seldepth 4 multipv 1 score mate 2 nodes 8213 nps 4106500 tbhits 0 time 2 pv d1d8 b8d8 h1d1";
+
+    private final StockfishEngine.AnalysisInfo info = new StockfishEngine.AnalysisInfo();
+
+    @Benchmark
+    public StockfishEngine.AnalysisInfo parseShortLine() {
+        UciInfoParser.parse(SHORT_LINE, info);
+        return info;
+    }
+
+    @Benchmark
+    public StockfishEngine.AnalysisInfo parseLongLine() {
+        UciInfoParser.parse(LONG_LINE, info);
+        return info;
+    }
+
+    @Benchmark
+    public StockfishEngine.AnalysisInfo parseMateLine() {
+        UciInfoParser.parse(MATE_LINE, info);
+        return info;
+    }
+}
@@ -0,0 +1,89 @@
+package com.enkelagon.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for probing and storing in the off-heap evaluation table, single-threaded
+ * and with four threads sharing one table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OffHeapEvalTableBenchmark {
+
+    private static final int KEYS = 1 << 20;
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        OffHeapEvalTable table;
+        long[] keys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            table = OffHeapEvalTable.allocate(256);
+            keys = new long[KEYS];
+            SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < KEYS; i++) {
+                keys[i] = random.nextLong();
+                table.store(keys[i], i & 0xFFF, i % 600 - 300, false, 20);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+        long missKey = 1;
+
+        int next() {
+            index = (index + 1) & (KEYS - 1);
+            return index;
+        }
+    }
+
+    @Benchmark
+    public long probeHit(Table table, Cursor cursor) {
+        return table.table.probe(table.keys[cursor.next()]);
+    }
+
+    @Benchmark
+    public long probeMiss(Table table, Cursor cursor) {
+        cursor.missKey = cursor.missKey * 6364136223846793005L + 1442695040888963407L;
+        return table.table.probe(cursor.missKey);
+    }
+
+    @Benchmark
+    public void store(Table table, Cursor cursor) {
+        int i = cursor.next();
+        table.table.store(table.keys[i], i & 0xFFF, 17, false, 21);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long probeHitShared(Table table, Cursor cursor) {
+        return table.table.probe(table.keys[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void storeShared(Table table, Cursor cursor) {
+        int i = cursor.next();
+        table.table.store(table.keys[i], i & 0xFFF, 17, false, 21);
+    }
+}
@@ -0,0 +1,101 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.model.Board;
+import com.enkelagon.model.Game;
+import com.enkelagon.model.Move;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Time-to-depth for consecutive positions of one game, sending each position either as
+ * a bare FEN or as the game's root plus its move list. Needs a real engine process, so
+ * it is a plain main rather than a JMH benchmark:
+ *
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp target/classes com.enkelagon.engine.TimeToDepthBenchmark [--stockfish path] [--depth 16] [--rounds 2]
+ * </pre>
+ */
+public class TimeToDepthBenchmark {
+
+    /** Morphy vs. Duke of Brunswick and Count Isouard, Paris 1858. */
+    private static final String[] OPERA_GAME = {
+            "e2e4", "e7e5", "g1f3", "d7d6", "d2d4", "c8g4", "d4e5", "g4f3", "d1f3", "d6e5",
+            "f1c4", "g8f6", "f3b3", "d8e7", "b1c3", "c7c6", "c1g5", "b7b5", "c3b5", "c6b5",
+            "c4b5", "b8d7", "e1c1", "a8d8", "d1d7", "d8d7", "h1d1", "e7e6", "b5d7", "f6d7",
+            "b3b8", "d7b8"
+    };
+
+    private TimeToDepthBenchmark() {
+        // Command-line tool
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        String stockfishPath = null;
+        int depth = 16;
+        int rounds = 2;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stockfish" -> stockfishPath = args[++i];
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        StockfishEngine engine = stockfishPath != null ? new StockfishEngine(stockfishPath) : new StockfishEngine();
+        engine.start();
+        try {
+            long[] fenTotals = new long[rounds];
+            long[] movesTotals = new long[rounds];
+            for (int round = 0; round < rounds; round++) {
+                // Alternate which mode goes first so neither always runs on a warmer machine
+                boolean fenFirst = round % 2 == 0;
+                long first = playThrough(engine, depth, fenFirst);
+                long second = playThrough(engine, depth, !fenFirst);
+                fenTotals[round] = fenFirst ? first : second;
+                movesTotals[round] = fenFirst ? second : first;
+                System.out.printf("round %d: fen %8.1f ms   moves %8.1f ms%n",
+                        round + 1, fenTotals[round] / 1e6, movesTotals[round] / 1e6);
+            }
+            Arrays.sort(fenTotals);
+            Arrays.sort(movesTotals);
+            long fenMedian = fenTotals[rounds / 2];
+            long movesMedian = movesTotals[rounds / 2];
+            System.out.printf("%nMedian over %d round(s), %d plies to depth %d:%n", rounds, OPERA_GAME.length, depth);
+            System.out.printf("  position fen <fen>            %8.1f ms (%.2f ms/ply)%n",
+                    fenMedian / 1e6, fenMedian / 1e6 / OPERA_GAME.length);
+            System.out.printf("  position <root> moves ...     %8.1f ms (%.2f ms/ply)%n",
+                    movesMedian / 1e6, movesMedian / 1e6 / OPERA_GAME.length);
+            System.out.printf("  speedup                       %8.2fx%n", (double) fenMedian / Math.max(1, movesMedian));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Searches every position of the game in order, starting from a fresh engine game,
+     * and returns the total time to reach the depth.
+     */
+    private static long playThrough(StockfishEngine engine, int depth, boolean fenOnly)
+            throws IOException, InterruptedException, ExecutionException {
+        engine.newGame();
+        Game game = new Game();
+        game.loadFromFen(Board.STARTING_FEN);
+        String goCommand = "go depth " + depth;
+        long total = 0;
+        for (String uci : OPERA_GAME) {
+            game.makeMove(Move.fromUci(uci, game.getBoard()));
+            UciPosition position = fenOnly ? UciPosition.fromFen(game.getCurrentFen()) : UciPosition.of(game);
+            long start = System.nanoTime();
+            engine.search(position, goCommand).get();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,105 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * First-move latency of a freshly started engine, with and without {@link EngineWarmup}
+ * in between. Each round starts new processes; the move searched is not one of the
+ * warm-up positions. Needs a real engine process, so it is a plain main rather than a
+ * JMH benchmark:
+ *
+ * <pre>
+ * mvn -Pbenchmark compile
+ * java -cp target/classes com.enkelagon.engine.WarmupBenchmark [--stockfish path] [--go "go depth 12"]
+ *     [--rounds 5] [--threads 4] [--hash 256]
+ * </pre>
+ *
+ * The second search of each engine is reported too, as the latency a warm engine has.
+ */
+public class WarmupBenchmark {
+
+    /** Italian game after 1.e4 e5 2.Nf3 Nc6 3.Bc4 Bc5, the engine to move. */
+    private static final UciPosition FIRST_MOVE = UciPosition.fromFen(
+            "r1bqk1nr/pppp1ppp/2n5/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+    private static final UciPosition SECOND_MOVE = UciPosition.fromFen(
+            "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/2P2N2/PP1P1PPP/RNBQK2R w KQkq - 1 5");
+
+    private WarmupBenchmark() {
+        // Command-line tool
+    }
+
+    public static void main(String[] args) throws IOException {
+        String stockfishPath = null;
+        String goCommand = "go depth 12";
+        int rounds = 5;
+        int threads = HardwareProfile.get().getPhysicalCores();
+        int hashMB = 256;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stockfish" -> stockfishPath = args[++i];
+                case "--go" -> goCommand = args[++i];
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--hash" -> hashMB = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        EngineConfig config = new EngineConfig();
+        config.applyPreset(EngineConfig.Preset.HARD);
+        config.setPonder(false);
+        config.setThreads(threads);
+        config.setHashMB(hashMB);
+
+        long[] cold = new long[rounds];
+        long[] warm = new long[rounds];
+        long[] second = new long[rounds];
+        long[] warmupTime = new long[rounds];
+        for (int round = 0; round < rounds; round++) {
+            // Alternate which goes first so neither always runs on a warmer machine
+            boolean coldFirst = round % 2 == 0;
+            for (boolean warmUp : coldFirst ? new boolean[]{false, true} : new boolean[]{true, false}) {
+                StockfishEngine engine = stockfishPath != null ? new StockfishEngine(stockfishPath) : new StockfishEngine();
+                engine.setConfig(config.copy());
+                engine.start();
+                try {
+                    if (warmUp) {
+                        warmupTime[round] = new EngineWarmup().run(engine);
+                    }
+                    engine.newGame();
+                    long first = timeSearch(engine, FIRST_MOVE, goCommand);
+                    if (warmUp) {
+                        warm[round] = first;
+                    } else {
+                        cold[round] = first;
+                        second[round] = timeSearch(engine, SECOND_MOVE, goCommand);
+                    }
+                } finally {
+                    engine.shutdown();
+                }
+            }
+            System.out.printf("round %d: cold %8.1f ms   after warm-up (%d ms) %8.1f ms   second move %8.1f ms%n",
+                    round + 1, cold[round] / 1e6, warmupTime[round], warm[round] / 1e6, second[round] / 1e6);
+        }
+
+        Arrays.sort(cold);
+        Arrays.sort(warm);
+        Arrays.sort(second);
+        Arrays.sort(warmupTime);
+        System.out.printf("%nMedian over %d round(s), \"%s\", Threads %d, Hash %d MB:%n", rounds, goCommand, threads, hashMB);
+        System.out.printf("  first move, cold          %8.1f ms%n", cold[rounds / 2] / 1e6);
+        System.out.printf("  first move, warmed up     %8.1f ms (warm-up %d ms)%n", warm[rounds / 2] / 1e6,
+                warmupTime[rounds / 2]);
+        System.out.printf("  second move, cold engine  %8.1f ms%n", second[rounds / 2] / 1e6);
+    }
+
+    private static long timeSearch(StockfishEngine engine, UciPosition position, String goCommand) {
+        long start = System.nanoTime();
+        engine.search(position, goCommand).join();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,62 @@
+package com.enkelagon.logic;
+
+import com.enkelagon.model.Game;
+import com.enkelagon.model.Move;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for FEN validation and PGN parsing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogicBenchmark {
+
+    /** Morphy vs. Duke of Brunswick and Count Isouard, Paris 1858. */
+    private static final String[] OPERA_GAME = {
+            "e2e4", "e7e5", "g1f3", "d7d6", "d2d4", "c8g4", "d4e5", "g4f3", "d1f3", "d6e5",
+            "f1c4", "g8f6", "f3b3", "d8e7", "b1c3", "c7c6", "c1g5", "b7b5", "c3b5", "c6b5",
+            "c4b5", "b8d7", "e1c1", "a8d8", "d1d7", "d8d7", "h1d1", "e7e6", "b5d7", "f6d7",
+            "b3b8", "d7b8", "d1d8"
+    };
+
+    private static final String FEN = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private final PgnHandler pgnHandler = new PgnHandler();
+    private String pgn;
+
+    @Setup
+    public void setUp() {
+        Game game = new Game();
+        game.setWhitePlayer("Paul Morphy");
+        game.setBlackPlayer("Duke Karl / Count Isouard");
+        for (String uci : OPERA_GAME) {
+            game.makeMove(Move.fromUci(uci, game.getBoard()));
+        }
+        pgn = pgnHandler.exportToPgn(game);
+    }
+
+    @Benchmark
+    public boolean isValidFen() {
+        return FenParser.isValidFen(FEN);
+    }
+
+    @Benchmark
+    public Game parsePgn() {
+        return pgnHandler.parsePgn(pgn);
+    }
+}
@@ -0,0 +1,72 @@
+package com.enkelagon.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for Board move application and FEN conversion.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    @Param({
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"
+    })
+    public String fen;
+
+    private Board board;
+    private Move move;
+    private int packedMove;
+
+    @Setup
+    public void setUp() {
+        board = new Board();
+        board.loadFromFen(fen);
+        // e2e4 from the start position, Nxf7 (e5f7) in Kiwipete
+        move = Move.fromUci(board.pieceAt(Bitboard.E1 + 8) == Piece.WHITE_PAWN ? "e2e4" : "e5f7", board);
+        packedMove = PackedMove.fromMove(move);
+    }
+
+    /**
+     * Makes and takes back a move so every invocation starts from the same position.
+     */
+    @Benchmark
+    public int makeMove() {
+        board.makeMove(move);
+        return board.unmakeMove();
+    }
+
+    @Benchmark
+    public int makeMovePacked() {
+        board.makeMove(packedMove);
+        return board.unmakeMove();
+    }
+
+    @Benchmark
+    public String toFen() {
+        return board.toFen();
+    }
+
+    @Benchmark
+    public Board loadFromFen() {
+        board.loadFromFen(fen);
+        return board;
+    }
+}
@@ -0,0 +1,60 @@
+package com.enkelagon.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for converting moves between UCI and algebraic notation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+
+    private Board board;
+    private Move quietMove;
+    private Move promotionCapture;
+    private Board promotionBoard;
+
+    @Setup
+    public void setUp() {
+        board = new Board();
+        quietMove = Move.fromUci("g1f3", board);
+        promotionBoard = new Board();
+        promotionBoard.loadFromFen("n1n5/PPPk4/8/8/8/8/4Kppp/5N1N w - - 0 1");
+        promotionCapture = Move.fromUci("b7a8q", promotionBoard);
+    }
+
+    @Benchmark
+    public Move fromUci() {
+        return Move.fromUci("g1f3", board);
+    }
+
+    @Benchmark
+    public Move fromUciPromotion() {
+        return Move.fromUci("b7a8q", promotionBoard);
+    }
+
+    @Benchmark
+    public String toAlgebraic() {
+        return quietMove.toAlgebraic();
+    }
+
+    @Benchmark
+    public String toAlgebraicPromotion() {
+        return promotionCapture.toAlgebraic();
+    }
+}
@@ -0,0 +1,466 @@
+package com.enkelagon;
+
+import com.enkelagon.engine.EngineConfig;
+import com.enkelagon.engine.EnginePool;
+import com.enkelagon.engine.HardwareProfile;
+import com.enkelagon.engine.OffHeapEvalTable;
+import com.enkelagon.engine.SearchResult;
+import com.enkelagon.engine.UciPosition;
+import com.enkelagon.logic.EpdParser;
+import com.enkelagon.logic.FenParser;
+import com.enkelagon.model.PackedMove;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Headless batch evaluation: reads an EPD or FEN file line by line and writes one result
+ * per position as CSV or JSON lines, searching several positions at once on separate
+ * engine processes. Needs no display, so it runs on build servers.
+ *
+ * <pre>
+ * java -cp enkelagon.jar com.enkelagon.BatchEval positions.epd [--output results.csv]
+ *     [--format csv|jsonl] [--nodes N | --depth N | --movetime MS]
+ *     [--engines N] [--threads N] [--hash MB] [--checkpoint FILE]
+ *     [--cache MB] [--cache-file FILE] [--stockfish PATH]
+ * </pre>
+ *
+ * Results are written in input order as soon as every earlier position is done. Scores
+ * are from the side to move's point of view, as the engine reports them. With
+ * --checkpoint, progress is saved every second and on Ctrl-C; running the same command
+ * again continues after the last position written. --cache keeps results in an
+ * {@link OffHeapEvalTable} so repeated positions are searched once. Results kept in a
+ * --cache-file from earlier runs are only reused with --depth, when an entry's depth
+ * shows it meets the budget.
+ */
+public class BatchEval {
+
+    private static final long CHECKPOINT_INTERVAL_MS = 1000;
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+    /** Positions queued per engine, so the next search can start at once. */
+    private static final int IN_FLIGHT_PER_ENGINE = 4;
+
+    private static final String[] CSV_COLUMNS = {
+            "line", "id", "fen", "bestmove", "score_cp", "mate", "depth", "nodes", "cached", "error"
+    };
+
+    private enum Format { CSV, JSONL }
+
+    /**
+     * The outcome for one input line.
+     */
+    private record Row(long line, String id, String fen, String bestMove, Integer scoreCp, Integer mate,
+                       int depth, long nodes, boolean cached, String error) {
+
+        static Row failed(long line, String id, String fen, String error) {
+            return new Row(line, id, fen, null, null, null, 0, 0, false, error);
+        }
+    }
+
+    private Path input;
+    private Path output;
+    private Format format;
+    private String goCommand = "go nodes 1000000";
+    private int minCachedDepth;
+    /** One single-threaded engine per physical core by default. */
+    private int engines = HardwareProfile.get().getPhysicalCores();
+    private int threads;
+    private int hashMB;
+    private Path checkpoint;
+    private int cacheMB;
+    private Path cacheFile;
+    private String stockfishPath;
+
+    private EnginePool pool;
+    private OffHeapEvalTable table;
+    /** Whether table entries may answer a position; see {@link #run()}. */
+    private boolean probeTable;
+    private final Gson gson = new Gson();
+
+    // Output state, guarded by this
+    private final Map<Long, Row> pending = new TreeMap<>();
+    private long nextSequence;
+    private OutputStream out;
+    private long outputBytes;
+    private long lastLine;
+    private long written;
+    private long cachedCount;
+    private long errorCount;
+    private long startNanos;
+    private long lastCheckpointMs;
+    private long lastProgressMs;
+    private boolean closed;
+
+    private BatchEval() {
+        // Command-line tool
+    }
+
+    public static void main(String[] args) {
+        BatchEval batch = new BatchEval();
+        try {
+            batch.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        try {
+            batch.run();
+        } catch (IOException e) {
+            System.err.println("Batch evaluation failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (input != null) {
+                    throw new IllegalArgumentException("More than one input file: " + arg);
+                }
+                input = Path.of(arg);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--output" -> output = Path.of(value);
+                case "--format" -> format = Format.valueOf(value.toUpperCase());
+                case "--nodes" -> goCommand = "go nodes " + Long.parseLong(value);
+                case "--depth" -> {
+                    minCachedDepth = Integer.parseInt(value);
+                    goCommand = "go depth " + minCachedDepth;
+                }
+                case "--movetime" -> goCommand = "go movetime " + Long.parseLong(value);
+                case "--engines" -> engines = Math.max(1, Integer.parseInt(value));
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--hash" -> hashMB = Integer.parseInt(value);
+                case "--checkpoint" -> checkpoint = Path.of(value);
+                case "--cache" -> cacheMB = Integer.parseInt(value);
+                case "--cache-file" -> cacheFile = Path.of(value);
+                case "--stockfish" -> stockfishPath = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if (input == null) {
+            throw new IllegalArgumentException("Usage: BatchEval <positions.epd> [--output FILE] [--format csv|jsonl]"
+                    + " [--nodes N | --depth N | --movetime MS] [--engines N] [--threads N] [--hash MB]"
+                    + " [--checkpoint FILE] [--cache MB] [--cache-file FILE] [--stockfish PATH]");
+        }
+        if (checkpoint != null && output == null) {
+            throw new IllegalArgumentException("--checkpoint needs --output");
+        }
+        if (format == null) {
+            String name = output != null ? output.getFileName().toString().toLowerCase() : "";
+            format = name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSONL : Format.CSV;
+        }
+        if (threads <= 0) {
+            threads = EnginePool.defaultTotalThreads(engines);
+        }
+        if (hashMB <= 0) {
+            hashMB = 16 * engines;
+        }
+        if (cacheFile != null && cacheMB <= 0) {
+            cacheMB = 64;
+        }
+    }
+
+    private void run() throws IOException {
+        long skipLines = 0;
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            Properties saved = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpoint)) {
+                saved.load(reader);
+            }
+            skipLines = Long.parseLong(saved.getProperty("line", "0"));
+            outputBytes = Long.parseLong(saved.getProperty("outputBytes", "0"));
+            System.err.printf("Resuming after line %,d%n", skipLines);
+        }
+        lastLine = skipLines;
+        openOutput();
+
+        if (cacheMB > 0) {
+            table = cacheFile != null ? OffHeapEvalTable.open(cacheFile, cacheMB) : OffHeapEvalTable.allocate(cacheMB);
+            // Entries carry their depth but not the node or time budget that produced them,
+            // so a file from earlier runs can only answer a depth budget
+            probeTable = cacheFile == null || minCachedDepth > 0;
+            if (!probeTable) {
+                System.err.println("Cache file results are only reused with --depth; storing only");
+            }
+        }
+
+        EngineConfig base = new EngineConfig();
+        base.applyPreset(EngineConfig.Preset.HARD);
+        base.setPonder(false);
+        pool = stockfishPath != null
+                ? new EnginePool(stockfishPath, engines, base, threads, hashMB)
+                : new EnginePool(engines, base, threads, hashMB);
+        pool.start();
+
+        Thread interruptHandler = new Thread(this::close, "batch-eval-shutdown");
+        Runtime.getRuntime().addShutdownHook(interruptHandler);
+
+        startNanos = System.nanoTime();
+        lastProgressMs = System.currentTimeMillis();
+        int window = engines * IN_FLIGHT_PER_ENGINE;
+        Semaphore inFlight = new Semaphore(window);
+        long sequence = 0;
+        long lineNumber = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= skipLines) {
+                    continue;
+                }
+                long line = lineNumber;
+                EpdParser.Record record;
+                try {
+                    record = EpdParser.parseLine(text);
+                } catch (IllegalArgumentException e) {
+                    complete(sequence++, Row.failed(line, null, text.trim(), e.getMessage()));
+                    continue;
+                }
+                if (record == null) {
+                    continue;
+                }
+
+                inFlight.acquireUninterruptibly();
+                long seq = sequence++;
+                evaluate(line, record)
+                        .exceptionally(error -> Row.failed(line, record.getId(), record.fen(), describe(error)))
+                        .thenAccept(row -> {
+                            complete(seq, row);
+                            inFlight.release();
+                        });
+            }
+
+            // Wait for the last searches
+            inFlight.acquireUninterruptibly(window);
+            finish();
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(interruptHandler);
+            close();
+            pool.shutdown();
+            if (table != null) {
+                table.close();
+            }
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.err.printf("Done: %,d positions in %.1f s (%.1f positions/s), %,d from cache, %,d errors%n",
+                written, seconds, written / Math.max(seconds, 1e-9), cachedCount, errorCount);
+    }
+
+    private void openOutput() throws IOException {
+        if (output == null) {
+            out = System.out;
+        } else {
+            // Drop anything written after the last checkpoint, it is about to be redone
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (channel.size() < outputBytes) {
+                    throw new IOException("Output " + output + " is shorter than its checkpoint");
+                }
+                channel.truncate(outputBytes);
+            }
+            out = new BufferedOutputStream(new FileOutputStream(output.toFile(), true));
+        }
+        if (format == Format.CSV && outputBytes == 0) {
+            write(String.join(",", CSV_COLUMNS));
+        }
+    }
+
+    private CompletableFuture<Row> evaluate(long line, EpdParser.Record record) {
+        long key = 0;
+        if (table != null) {
+            key = FenParser.parse(record.fen()).getZobristKey();
+            long data = probeTable ? table.probe(key) : 0;
+            if (data != 0 && OffHeapEvalTable.depth(data) >= minCachedDepth) {
+                int move = OffHeapEvalTable.move(data);
+                boolean mate = OffHeapEvalTable.isMate(data);
+                int score = OffHeapEvalTable.score(data);
+                return CompletableFuture.completedFuture(new Row(line, record.getId(), record.fen(),
+                        move != PackedMove.NONE ? PackedMove.toUci(move) : null,
+                        mate ? null : score, mate ? score : null, OffHeapEvalTable.depth(data), 0, true, null));
+            }
+        }
+
+        long tableKey = key;
+        UciPosition position = UciPosition.fromFen(record.fen());
+        return pool.submit(engine -> engine.analyse(position, goCommand).join())
+                .thenApply(result -> {
+                    if (table != null && result.line() != null) {
+                        int move = result.bestMove() != null ? PackedMove.parseUci(result.bestMove()) : PackedMove.NONE;
+                        table.store(tableKey, move, result.line().isMate() ? result.line().getMateIn()
+                                : result.line().getScore(), result.line().isMate(), result.line().getDepth());
+                    }
+                    return toRow(line, record, result);
+                });
+    }
+
+    private static Row toRow(long line, EpdParser.Record record, SearchResult result) {
+        if (result.line() == null) {
+            return new Row(line, record.getId(), record.fen(), result.bestMove(), null, null, 0,
+                    result.nodes(), false, null);
+        }
+        boolean mate = result.line().isMate();
+        return new Row(line, record.getId(), record.fen(), result.bestMove(),
+                mate ? null : result.line().getScore(), mate ? result.line().getMateIn() : null,
+                result.line().getDepth(), result.nodes(), false, null);
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    /**
+     * Records a finished position and writes every row that is now next in input order.
+     */
+    private synchronized void complete(long sequence, Row row) {
+        if (closed) {
+            return;
+        }
+        pending.put(sequence, row);
+        Row next;
+        try {
+            while ((next = pending.remove(nextSequence)) != null) {
+                write(format == Format.CSV ? toCsv(next) : toJson(next));
+                nextSequence++;
+                lastLine = next.line;
+                written++;
+                if (next.cached) {
+                    cachedCount++;
+                }
+                if (next.error != null) {
+                    errorCount++;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (checkpoint != null && now - lastCheckpointMs >= CHECKPOINT_INTERVAL_MS) {
+                saveCheckpoint();
+                lastCheckpointMs = now;
+            }
+            if (now - lastProgressMs >= PROGRESS_INTERVAL_MS) {
+                double seconds = (System.nanoTime() - startNanos) / 1e9;
+                System.err.printf("%,d positions, %.1f positions/s%n", written, written / Math.max(seconds, 1e-9));
+                lastProgressMs = now;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(String text) throws IOException {
+        byte[] bytes = (text + "\n").getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        outputBytes += bytes.length;
+    }
+
+    private String toCsv(Row row) {
+        Object[] values = {
+                row.line, row.id, row.fen, row.bestMove, row.scoreCp, row.mate,
+                row.depth, row.nodes, row.cached, row.error
+        };
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String value = values[i] != null ? values[i].toString() : "";
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    private String toJson(Row row) {
+        JsonObject json = new JsonObject();
+        json.addProperty("line", row.line);
+        json.addProperty("id", row.id);
+        json.addProperty("fen", row.fen);
+        json.addProperty("bestmove", row.bestMove);
+        json.addProperty("score_cp", row.scoreCp);
+        json.addProperty("mate", row.mate);
+        json.addProperty("depth", row.depth);
+        json.addProperty("nodes", row.nodes);
+        json.addProperty("cached", row.cached);
+        json.addProperty("error", row.error);
+        return gson.toJson(json);
+    }
+
+    /**
+     * Writes the checkpoint atomically, after the output it refers to is on disk.
+     */
+    private void saveCheckpoint() throws IOException {
+        out.flush();
+        Properties state = new Properties();
+        state.setProperty("line", Long.toString(lastLine));
+        state.setProperty("outputBytes", Long.toString(outputBytes));
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp)) {
+            state.store(writer, "BatchEval progress for " + input);
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Called once the whole input is written: the checkpoint is no longer needed.
+     */
+    private synchronized void finish() throws IOException {
+        out.flush();
+        if (checkpoint != null) {
+            Files.deleteIfExists(checkpoint);
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Flushes the output and saves a final checkpoint. Rows finishing afterwards are
+     * dropped; they are redone when the run is resumed.
+     */
+    private synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (checkpoint != null) {
+                saveCheckpoint();
+            }
+            out.flush();
+            if (out != System.out) {
+                out.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
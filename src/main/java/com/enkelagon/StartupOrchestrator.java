@@ -0,0 +1,166 @@
+package com.enkelagon;
+
+import com.enkelagon.config.ConfigManager;
+import com.enkelagon.engine.EngineSessions;
+import com.enkelagon.engine.EngineWarmup;
+import com.enkelagon.engine.EvalCache;
+import com.enkelagon.ui.MainFrame;
+import com.enkelagon.ui.PieceRenderer;
+import com.enkelagon.ui.ThemeManager;
+
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts the application with as little as possible on the Event Dispatch Thread:
+ * <ul>
+ *     <li>engine processes are spawned (and finish their handshake) right away,</li>
+ *     <li>the settings are loaded at the same time,</li>
+ *     <li>then piece images are decoded, while the engines get their settings,</li>
+ *     <li>and the window is built and shown as soon as settings and images are there,
+ *     in an "engine starting" state until the engines are ready.</li>
+ * </ul>
+ * Every phase is recorded in a {@link StartupTimeline}. With
+ * {@code -Denkelagon.startupTimeline} it is printed once the engines are ready or have
+ * failed, or when the window cannot be shown.
+ */
+public class StartupOrchestrator {
+
+    public static final String FIRST_FRAME = "first frame";
+    public static final String ENGINE_READY = "engine ready";
+
+    /**
+     * Engines with their settings applied.
+     */
+    private record Engines(EngineSessions sessions, EngineWarmup warmup, EvalCache evalCache) {
+    }
+
+    private final StartupTimeline timeline = new StartupTimeline();
+    private final ExecutorService executor;
+
+    public StartupOrchestrator() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // Not daemons: main returns at once, so these keep the JVM alive until the EDT runs
+        this.executor = Executors.newFixedThreadPool(3,
+                runnable -> new Thread(runnable, "startup-" + threadCount.incrementAndGet()));
+    }
+
+    public StartupTimeline getTimeline() {
+        return timeline;
+    }
+
+    public void start() {
+        CompletableFuture<EngineSessions> spawned = CompletableFuture.supplyAsync(
+                () -> timeline.time("engine spawn", () -> {
+                    EngineSessions sessions = new EngineSessions();
+                    sessions.start();
+                    return sessions;
+                }), executor);
+        CompletableFuture<ConfigManager> config = CompletableFuture.supplyAsync(
+                () -> timeline.time("config", () -> {
+                    ConfigManager manager = ConfigManager.getInstance();
+                    ThemeManager.getInstance();
+                    return manager;
+                }), executor);
+        CompletableFuture<PieceRenderer> pieces = config.thenApplyAsync(
+                manager -> timeline.time("piece images", PieceRenderer::getInstance), executor);
+        CompletableFuture<Engines> engines = spawned.thenCombineAsync(config,
+                (sessions, manager) -> timeline.time("engine setup", () -> setUp(sessions, manager)), executor);
+
+        // Engines that start but cannot be set up still have to go
+        engines.whenComplete((ready, error) -> {
+            if (error != null && !spawned.isCompletedExceptionally()) {
+                spawned.join().shutdown();
+            }
+        });
+        CompletableFuture.allOf(engines, pieces).whenComplete((ignored, error) -> executor.shutdown());
+
+        CompletableFuture<MainFrame> frame = pieces.thenApplyAsync(
+                renderer -> timeline.time("window", this::showFrame), SwingUtilities::invokeLater);
+        frame.whenComplete((mainFrame, error) -> {
+            if (error != null) {
+                startupFailed(error);
+            }
+        });
+        frame.thenAcceptBothAsync(engines.handle((ready, error) -> error != null ? error : ready),
+                this::engineFinished, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Applies the settings (only what differs from the engines' defaults is sent), opens
+     * the evaluation cache, then starts the warm-up. The cache is attached before anything
+     * is queued on the engines.
+     */
+    private Engines setUp(EngineSessions sessions, ConfigManager config) {
+        sessions.setConfig(config.getEngineConfig());
+        EvalCache evalCache = openEvalCache(config);
+        sessions.setEvalCache(evalCache);
+        EngineWarmup warmup = config.isEngineWarmUp() ? sessions.warmUp() : null;
+        timeline.mark(ENGINE_READY);
+        return new Engines(sessions, warmup, evalCache);
+    }
+
+    /**
+     * Opens the persistent evaluation cache, falling back to memory only if the database
+     * cannot be opened. Returns null if the cache is disabled.
+     */
+    private static EvalCache openEvalCache(ConfigManager config) {
+        if (!config.isEvalCacheEnabled()) {
+            return null;
+        }
+        try {
+            return new EvalCache(config.getEvalCacheMaxEntries(), config.getEvalCachePath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new EvalCache(config.getEvalCacheMaxEntries());
+        }
+    }
+
+    /** Runs on the EDT. */
+    private MainFrame showFrame() {
+        ThemeManager.getInstance().initializeLookAndFeel();
+        MainFrame frame = new MainFrame(timeline);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                timeline.mark(FIRST_FRAME);
+            }
+        });
+        frame.setVisible(true);
+        return frame;
+    }
+
+    /** Runs on the EDT with the set-up engines or the reason they failed. */
+    private void engineFinished(MainFrame frame, Object result) {
+        if (result instanceof Engines ready) {
+            frame.engineReady(ready.sessions, ready.warmup, ready.evalCache);
+        } else {
+            Throwable error = (Throwable) result;
+            frame.engineFailed(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+        }
+        timeline.printIfEnabled();
+    }
+
+    private void startupFailed(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        cause.printStackTrace();
+        timeline.printIfEnabled();
+        SwingUtilities.invokeLater(() -> {
+            try {
+                JOptionPane.showMessageDialog(null,
+                        "Failed to start application: " + cause.getMessage(),
+                        "Startup Error", JOptionPane.ERROR_MESSAGE);
+            } finally {
+                System.exit(1);
+            }
+        });
+    }
+}
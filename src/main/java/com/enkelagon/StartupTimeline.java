@@ -0,0 +1,121 @@
+package com.enkelagon;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+
+/**
+ * When each start-up phase ran and on which thread, and when milestones such as the
+ * first frame were reached, in milliseconds since {@code main} was entered.
+ */
+public final class StartupTimeline {
+
+    /** Set (e.g. -Denkelagon.startupTimeline) to have the timeline printed. */
+    public static final String PRINT_PROPERTY = "enkelagon.startupTimeline";
+
+    /**
+     * A timed phase.
+     */
+    public record Phase(String name, String thread, long startMs, long endMs) {
+        public long durationMs() {
+            return endMs - startMs;
+        }
+    }
+
+    /**
+     * A point in time, e.g. "first frame".
+     */
+    public record Milestone(String name, long atMs) {
+    }
+
+    private final long origin = System.nanoTime();
+    private final long jvmUptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+    private final List<Phase> phases = new ArrayList<>();
+    private final List<Milestone> milestones = new ArrayList<>();
+
+    /**
+     * Runs a phase on the calling thread and records it, also when it fails. Checked
+     * exceptions are wrapped in a {@link CompletionException}, so phases can run as
+     * {@link java.util.concurrent.CompletableFuture} stages.
+     */
+    public <T> T time(String name, Callable<T> phase) {
+        long start = nowMs();
+        try {
+            return phase.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            synchronized (this) {
+                phases.add(new Phase(name, Thread.currentThread().getName(), start, nowMs()));
+            }
+        }
+    }
+
+    /**
+     * Records a phase timed elsewhere, from {@link System#nanoTime()} readings.
+     */
+    public synchronized void addPhase(String name, long startNanos, long endNanos) {
+        phases.add(new Phase(name, Thread.currentThread().getName(), (startNanos - origin) / 1_000_000,
+                (endNanos - origin) / 1_000_000));
+    }
+
+    public synchronized void mark(String milestone) {
+        milestones.add(new Milestone(milestone, nowMs()));
+    }
+
+    /**
+     * Time a milestone was reached, or -1 if it has not been.
+     */
+    public synchronized long getMilestoneMs(String milestone) {
+        for (Milestone m : milestones) {
+            if (m.name.equals(milestone)) {
+                return m.atMs;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return List.copyOf(phases);
+    }
+
+    /** How long the JVM ran before {@code main}. */
+    public long getJvmUptimeMs() {
+        return jvmUptimeMs;
+    }
+
+    /**
+     * Prints the timeline to stdout if {@link #PRINT_PROPERTY} is set (to anything but
+     * "false"); otherwise it is only kept in memory.
+     */
+    public void printIfEnabled() {
+        String value = System.getProperty(PRINT_PROPERTY);
+        if (value != null && !value.equalsIgnoreCase("false")) {
+            System.out.print(this);
+        }
+    }
+
+    private long nowMs() {
+        return (System.nanoTime() - origin) / 1_000_000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Startup (ms since main; JVM started %d ms earlier)%n", jvmUptimeMs));
+        List<Phase> sorted = new ArrayList<>(phases);
+        sorted.sort((a, b) -> Long.compare(a.startMs, b.startMs));
+        for (Phase phase : sorted) {
+            sb.append(String.format("  %-16s %6d - %6d  %6d ms  [%s]%n", phase.name, phase.startMs, phase.endMs,
+                    phase.durationMs(), phase.thread));
+        }
+        for (Milestone milestone : milestones) {
+            sb.append(String.format("  %-16s %6d%n", milestone.name, milestone.atMs));
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,8 @@
 package com.enkelagon.config;
 
 import com.enkelagon.engine.EngineConfig;
+import com.enkelagon.engine.EngineTuner;
+import com.enkelagon.engine.HardwareProfile;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
@@ -100,12 +102,24 @@ public class ConfigManager {
                     "hashMB": 256,
                     "skillLevel": 10,
                     "depthLimit": 10,
-                    "moveTimeMs": 1000
+                    "moveTimeMs": 1000,
+                    "ponder": false,
+                    "autoTune": true,
+                    "warmUp": true
                   },
+                  "engineTuning": {},
                   "window": {
                     "width": 1200,
                     "height": 800,
                     "maximized": false
+                  },
+                  "analysis": {
+                    "maxFps": 20
+                  },
+                  "cache": {
+                    "enabled": true,
+                    "maxEntries": 100000,
+                    "file": ""
                   }
                 }
                 """;
@@ -310,6 +324,9 @@ public class ConfigManager {
                 if (engine.has("moveTimeMs")) {
                     engineConfig.setMoveTimeMs(engine.get("moveTimeMs").getAsInt());
                 }
+                if (engine.has("ponder")) {
+                    engineConfig.setPonder(engine.get("ponder").getAsBoolean());
+                }
                 if (engine.has("preset")) {
                     String preset = engine.get("preset").getAsString();
                     try {
@@ -323,6 +340,15 @@ public class ConfigManager {
             // Use defaults
         }
 
+        // Measured settings for this machine replace the stored ones
+        EngineTuner.Result tuning = isEngineAutoTune() ? getEngineTuning(HardwareProfile.get().getHostKey()) : null;
+        if (tuning != null) {
+            EngineConfig.Preset preset = engineConfig.getPreset();
+            engineConfig.setThreads(tuning.threads());
+            engineConfig.setHashMB(tuning.hashMB());
+            engineConfig.applyPreset(preset);
+        }
+
         return engineConfig;
     }
 
@@ -334,9 +360,93 @@ public class ConfigManager {
         engine.addProperty("skillLevel", engineConfig.getSkillLevel());
         engine.addProperty("depthLimit", engineConfig.getDepthLimit());
         engine.addProperty("moveTimeMs", engineConfig.getMoveTimeMs());
+        engine.addProperty("ponder", engineConfig.isPonder());
+        engine.addProperty("autoTune", isEngineAutoTune());
+        engine.addProperty("warmUp", isEngineWarmUp());
         config.add("engine", engine);
     }
 
+    /**
+     * Whether Threads and Hash come from the tuning results for this machine (when there
+     * are any) rather than from the engine settings.
+     */
+    public boolean isEngineAutoTune() {
+        try {
+            JsonObject engine = config.getAsJsonObject("engine");
+            if (engine != null && engine.has("autoTune")) {
+                return engine.get("autoTune").getAsBoolean();
+            }
+        } catch (Exception e) {
+            // Use default
+        }
+        return true;
+    }
+
+    public void setEngineAutoTune(boolean autoTune) {
+        JsonObject engine = config.getAsJsonObject("engine");
+        if (engine == null) {
+            engine = new JsonObject();
+            config.add("engine", engine);
+        }
+        engine.addProperty("autoTune", autoTune);
+    }
+
+    /**
+     * Whether the engines run a short warm-up search after starting.
+     */
+    public boolean isEngineWarmUp() {
+        try {
+            JsonObject engine = config.getAsJsonObject("engine");
+            if (engine != null && engine.has("warmUp")) {
+                return engine.get("warmUp").getAsBoolean();
+            }
+        } catch (Exception e) {
+            // Use default
+        }
+        return true;
+    }
+
+    public void setEngineWarmUp(boolean warmUp) {
+        JsonObject engine = config.getAsJsonObject("engine");
+        if (engine == null) {
+            engine = new JsonObject();
+            config.add("engine", engine);
+        }
+        engine.addProperty("warmUp", warmUp);
+    }
+
+    /**
+     * The stored tuning result for a host key (see {@link HardwareProfile#getHostKey()}),
+     * or null if that machine has not been tuned.
+     */
+    public EngineTuner.Result getEngineTuning(String hostKey) {
+        try {
+            JsonObject tuning = config.getAsJsonObject("engineTuning");
+            if (tuning != null && tuning.has(hostKey)) {
+                JsonObject host = tuning.getAsJsonObject(hostKey);
+                return new EngineTuner.Result(hostKey, host.get("threads").getAsInt(), host.get("hashMB").getAsInt(),
+                        host.get("nodesPerSecond").getAsLong(), host.get("peakRssMB").getAsLong());
+            }
+        } catch (Exception e) {
+            // Not tuned
+        }
+        return null;
+    }
+
+    public void setEngineTuning(EngineTuner.Result result) {
+        JsonObject tuning = config.getAsJsonObject("engineTuning");
+        if (tuning == null) {
+            tuning = new JsonObject();
+            config.add("engineTuning", tuning);
+        }
+        JsonObject host = new JsonObject();
+        host.addProperty("threads", result.threads());
+        host.addProperty("hashMB", result.hashMB());
+        host.addProperty("nodesPerSecond", result.nodesPerSecond());
+        host.addProperty("peakRssMB", result.peakRssMB());
+        tuning.add(result.hostKey(), host);
+    }
+
     // Window settings
     public int getWindowWidth() {
         return getWindowValue("width", 1200);
@@ -381,6 +491,66 @@ public class ConfigManager {
         window.addProperty("maximized", maximized);
     }
 
+    // Analysis display settings
+
+    /**
+     * Maximum number of analysis updates rendered per second.
+     */
+    public int getAnalysisMaxFps() {
+        try {
+            JsonObject analysis = config.getAsJsonObject("analysis");
+            if (analysis != null && analysis.has("maxFps")) {
+                return Math.max(1, analysis.get("maxFps").getAsInt());
+            }
+        } catch (Exception e) {
+            // Use default
+        }
+        return 20;
+    }
+
+    // Evaluation cache settings
+    public boolean isEvalCacheEnabled() {
+        try {
+            JsonObject cache = config.getAsJsonObject("cache");
+            if (cache != null && cache.has("enabled")) {
+                return cache.get("enabled").getAsBoolean();
+            }
+        } catch (Exception e) {
+            // Use default
+        }
+        return true;
+    }
+
+    /**
+     * Number of positions kept in memory; the database holds any number.
+     */
+    public int getEvalCacheMaxEntries() {
+        try {
+            JsonObject cache = config.getAsJsonObject("cache");
+            if (cache != null && cache.has("maxEntries")) {
+                return Math.max(1, cache.get("maxEntries").getAsInt());
+            }
+        } catch (Exception e) {
+            // Use default
+        }
+        return 100000;
+    }
+
+    /**
+     * The SQLite file for the evaluation cache, by default in ~/.enkelagon.
+     */
+    public Path getEvalCachePath() {
+        try {
+            JsonObject cache = config.getAsJsonObject("cache");
+            if (cache != null && cache.has("file") && !cache.get("file").getAsString().isBlank()) {
+                return Paths.get(cache.get("file").getAsString());
+            }
+        } catch (Exception e) {
+            // Use default
+        }
+        return Paths.get(System.getProperty("user.home"), ".enkelagon", "eval-cache.db");
+    }
+
     private Color parseColor(String hex) {
         try {
             return Color.decode(hex);
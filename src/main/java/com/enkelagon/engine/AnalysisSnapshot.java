@@ -0,0 +1,181 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.model.PackedMove;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of one completed search depth: every MultiPV line, best first,
+ * together with the search statistics reported with the last of them.
+ */
+public final class AnalysisSnapshot {
+
+    /**
+     * One candidate line (a MultiPV rank) with its score and principal variation.
+     */
+    public static final class Line {
+        private final int rank;
+        private final int depth;
+        private final int selectiveDepth;
+        private final int score;
+        private final boolean mate;
+        private final int mateIn;
+        private final boolean lowerBound;
+        private final boolean upperBound;
+        private final boolean hasWdl;
+        private final int wdlWin;
+        private final int wdlDraw;
+        private final int wdlLoss;
+        private final int[] pv;
+
+        Line(StockfishEngine.AnalysisInfo info) {
+            this.rank = info.multiPv;
+            this.depth = info.depth;
+            this.selectiveDepth = info.selectiveDepth;
+            this.score = info.score;
+            this.mate = info.isMate;
+            this.mateIn = info.mateIn;
+            this.lowerBound = info.lowerBound;
+            this.upperBound = info.upperBound;
+            this.hasWdl = info.hasWdl;
+            this.wdlWin = info.wdlWin;
+            this.wdlDraw = info.wdlDraw;
+            this.wdlLoss = info.wdlLoss;
+            this.pv = Arrays.copyOf(info.pv, info.pvLength);
+        }
+
+        /** MultiPV rank, 1 = best. */
+        public int getRank() {
+            return rank;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getSelectiveDepth() {
+            return selectiveDepth;
+        }
+
+        /** Centipawn score from the side to move's point of view (if not a mate score). */
+        public int getScore() {
+            return score;
+        }
+
+        public boolean isMate() {
+            return mate;
+        }
+
+        public int getMateIn() {
+            return mateIn;
+        }
+
+        public boolean isLowerBound() {
+            return lowerBound;
+        }
+
+        public boolean isUpperBound() {
+            return upperBound;
+        }
+
+        public boolean hasWdl() {
+            return hasWdl;
+        }
+
+        /** Win/draw/loss expectation in permille, if the engine reported it. */
+        public int getWdlWin() {
+            return wdlWin;
+        }
+
+        public int getWdlDraw() {
+            return wdlDraw;
+        }
+
+        public int getWdlLoss() {
+            return wdlLoss;
+        }
+
+        public int getPvLength() {
+            return pv.length;
+        }
+
+        /** Returns a PV move in packed form (see {@link PackedMove}). */
+        public int getPvMove(int index) {
+            return pv[index];
+        }
+
+        /** Returns the first PV move, or NONE if the line is empty. */
+        public int getMove() {
+            return pv.length > 0 ? pv[0] : PackedMove.NONE;
+        }
+
+        /**
+         * Appends up to maxMoves of the PV in UCI notation, space separated.
+         */
+        public StringBuilder appendPv(StringBuilder sb, int maxMoves) {
+            int count = Math.min(pv.length, maxMoves);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                PackedMove.appendUci(sb, pv[i]);
+            }
+            return sb;
+        }
+    }
+
+    private final int depth;
+    private final long nodes;
+    private final long nps;
+    private final long timeMs;
+    private final int hashfull;
+    private final long tbHits;
+    private final List<Line> lines;
+
+    AnalysisSnapshot(int depth, long nodes, long nps, long timeMs, int hashfull, long tbHits, List<Line> lines) {
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nps = nps;
+        this.timeMs = timeMs;
+        this.hashfull = hashfull;
+        this.tbHits = tbHits;
+        this.lines = Collections.unmodifiableList(lines);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNps() {
+        return nps;
+    }
+
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    /** Hash table usage in permille. */
+    public int getHashfull() {
+        return hashfull;
+    }
+
+    public long getTbHits() {
+        return tbHits;
+    }
+
+    /** Candidate lines ordered by rank, best first. */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /** The best line, or null if the snapshot is empty. */
+    public Line getBestLine() {
+        return lines.isEmpty() ? null : lines.get(0);
+    }
+}
@@ -1,5 +1,8 @@
 package com.enkelagon.engine;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Configuration for the Stockfish engine including presets and advanced options.
  */
@@ -48,11 +51,13 @@ public class EngineConfig {
     private int moveTimeMs;
     private int multiPV;
     private boolean ponder;
+    /** Further UCI options by name, e.g. "UCI_ShowWDL". */
+    private final Map<String, String> extraOptions = new LinkedHashMap<>();
 
     public EngineConfig() {
         // Default to medium difficulty
         this.preset = Preset.MEDIUM;
-        this.threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.threads = HardwareProfile.get().getPhysicalCores();
         this.hashMB = 256;
         this.skillLevel = preset.skillLevel;
         this.depthLimit = preset.depth;
@@ -61,6 +66,23 @@ public class EngineConfig {
         this.ponder = false;
     }
 
+    /**
+     * Returns an independent copy with the same settings and preset.
+     */
+    public EngineConfig copy() {
+        EngineConfig copy = new EngineConfig();
+        copy.preset = preset;
+        copy.threads = threads;
+        copy.hashMB = hashMB;
+        copy.skillLevel = skillLevel;
+        copy.depthLimit = depthLimit;
+        copy.moveTimeMs = moveTimeMs;
+        copy.multiPV = multiPV;
+        copy.ponder = ponder;
+        copy.extraOptions.putAll(extraOptions);
+        return copy;
+    }
+
     public void applyPreset(Preset preset) {
         this.preset = preset;
         if (preset != Preset.CUSTOM) {
@@ -135,17 +157,39 @@ public class EngineConfig {
         this.ponder = ponder;
     }
 
+    /**
+     * Sets any other UCI option the engine advertises, or removes it if value is null.
+     * Options are checked against the engine when the config is applied.
+     */
+    public void setOption(String name, String value) {
+        if (value == null) {
+            extraOptions.remove(name);
+        } else {
+            extraOptions.put(name, value);
+        }
+    }
+
+    /**
+     * Returns the UCI option values to configure the engine, by option name.
+     */
+    public Map<String, String> getUciOptionValues() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("Threads", Integer.toString(threads));
+        values.put("Hash", Integer.toString(hashMB));
+        values.put("Skill Level", Integer.toString(skillLevel));
+        values.put("MultiPV", Integer.toString(multiPV));
+        values.put("Ponder", Boolean.toString(ponder));
+        values.putAll(extraOptions);
+        return values;
+    }
+
     /**
      * Returns the UCI commands to configure the engine.
      */
     public String[] getUciOptions() {
-        return new String[]{
-                "setoption name Threads value " + threads,
-                "setoption name Hash value " + hashMB,
-                "setoption name Skill Level value " + skillLevel,
-                "setoption name MultiPV value " + multiPV,
-                "setoption name Ponder value " + ponder
-        };
+        return getUciOptionValues().entrySet().stream()
+                .map(option -> "setoption name " + option.getKey() + " value " + option.getValue())
+                .toArray(String[]::new);
     }
 
     /**
@@ -175,6 +219,7 @@ public class EngineConfig {
                 ", depthLimit=" + depthLimit +
                 ", moveTimeMs=" + moveTimeMs +
                 ", multiPV=" + multiPV +
+                (extraOptions.isEmpty() ? "" : ", options=" + extraOptions) +
                 '}';
     }
 }
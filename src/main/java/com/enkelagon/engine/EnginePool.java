@@ -0,0 +1,252 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of Stockfish processes sharing one thread and hash budget, so that
+ * independent jobs (play, analysis, hints, batch work) can search at the same time
+ * instead of stopping each other.
+ *
+ * <p>Engines are either borrowed and released by hand, or used through
+ * {@link #submit(EngineTask)}, which runs a task on the pool's own threads with an
+ * engine borrowed for the duration. Released engines are checked with "isready" and
+ * restarted if their process died.
+ */
+public class EnginePool {
+
+    /**
+     * Work to run against a borrowed engine.
+     */
+    @FunctionalInterface
+    public interface EngineTask<T> {
+        T run(StockfishEngine engine) throws IOException;
+    }
+
+    private final StockfishEngine[] engines;
+    private final BlockingQueue<StockfishEngine> idle = new LinkedBlockingQueue<>();
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool of engines found at the default location.
+     */
+    public EnginePool(int size, EngineConfig baseConfig, int totalThreads, int totalHashMB) {
+        this(null, size, baseConfig, totalThreads, totalHashMB);
+    }
+
+    /**
+     * Creates a pool of size engines. Each gets a copy of baseConfig with its share of
+     * totalThreads and totalHashMB; the engines are not started until {@link #start()}.
+     */
+    public EnginePool(String stockfishPath, int size, EngineConfig baseConfig, int totalThreads, int totalHashMB) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+        }
+        engines = new StockfishEngine[size];
+        for (int i = 0; i < size; i++) {
+            engines[i] = stockfishPath != null ? new StockfishEngine(stockfishPath) : new StockfishEngine();
+            engines[i].setConfig(shareOf(baseConfig, i, size, totalThreads, totalHashMB));
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "engine-pool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Threads for size engines searching at the same time: together they use every
+     * physical core, and no core gets more than one engine's threads.
+     */
+    public static int defaultTotalThreads(int size) {
+        return HardwareProfile.get().threadsPerEngine(size) * size;
+    }
+
+    /**
+     * The config for engine index of size: threads are split as evenly as possible
+     * (earlier engines take the remainder), hash is split equally.
+     */
+    public static EngineConfig shareOf(EngineConfig base, int index, int size, int totalThreads, int totalHashMB) {
+        EngineConfig share = base.copy();
+        int threads = totalThreads / size + (index < totalThreads % size ? 1 : 0);
+        share.setThreads(Math.max(1, threads));
+        share.setHashMB(Math.max(1, totalHashMB / size));
+        return share;
+    }
+
+    /**
+     * Starts every engine in parallel. If any fails to start, all are stopped again.
+     */
+    public void start() throws IOException {
+        List<CompletableFuture<Void>> starts = new ArrayList<>();
+        for (StockfishEngine engine : engines) {
+            starts.add(CompletableFuture.runAsync(() -> {
+                try {
+                    engine.start();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(starts.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            for (StockfishEngine engine : engines) {
+                engine.stop();
+            }
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        }
+
+        for (StockfishEngine engine : engines) {
+            idle.add(engine);
+        }
+    }
+
+    /**
+     * Takes an idle engine, waiting until one is released.
+     */
+    public StockfishEngine borrow() throws IOException {
+        return borrow(0);
+    }
+
+    /**
+     * Takes an idle engine, waiting at most timeoutMs (0 waits indefinitely).
+     */
+    public StockfishEngine borrow(long timeoutMs) throws IOException {
+        if (closed) {
+            throw new IOException("Engine pool is shut down");
+        }
+        try {
+            StockfishEngine engine = timeoutMs > 0 ? idle.poll(timeoutMs, TimeUnit.MILLISECONDS) : idle.take();
+            if (engine == null) {
+                throw new IOException("No engine available within " + timeoutMs + " ms");
+            }
+            return engine;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an engine", e);
+        }
+    }
+
+    /**
+     * Returns a borrowed engine. Any analysis or pondering it was doing is stopped and its
+     * callbacks are cleared; event listeners the borrower added must be removed by it.
+     * An engine that no longer answers is restarted before it goes back into the pool.
+     */
+    public void release(StockfishEngine engine) {
+        engine.stopAnalysis();
+        engine.stopPonder();
+        engine.setAnalysisCallback(null);
+        engine.setSnapshotCallback(null);
+        engine.setBestMoveCallback(null);
+
+        if (closed) {
+            return;
+        }
+        if (!engine.ping()) {
+            restart(engine);
+        }
+        idle.add(engine);
+    }
+
+    /**
+     * Runs a task on a pool thread with a borrowed engine, releasing it afterwards.
+     */
+    public <T> CompletableFuture<T> submit(EngineTask<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            StockfishEngine engine;
+            try {
+                engine = borrow();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            try {
+                return task.run(engine);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                release(engine);
+            }
+        }, executor);
+    }
+
+    /**
+     * Searches a position on whichever engine is free first.
+     */
+    public CompletableFuture<UciEvent.BestMoveEvent> search(UciPosition position, String goCommand) {
+        return submit(engine -> {
+            try {
+                return engine.search(position, goCommand).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException io ? io : new IOException(cause);
+            }
+        });
+    }
+
+    /**
+     * Pings every idle engine and restarts those that do not answer.
+     *
+     * @return the number of engines restarted
+     */
+    public int checkHealth() {
+        List<StockfishEngine> checked = new ArrayList<>();
+        idle.drainTo(checked);
+        int restarted = 0;
+        for (StockfishEngine engine : checked) {
+            if (!engine.ping()) {
+                restart(engine);
+                restarted++;
+            }
+            idle.add(engine);
+        }
+        return restarted;
+    }
+
+    private void restart(StockfishEngine engine) {
+        engine.stop();
+        try {
+            engine.start();
+        } catch (IOException e) {
+            // Left stopped; the next borrower gets "Engine not running" and the next check retries
+            e.printStackTrace();
+        }
+    }
+
+    public int size() {
+        return engines.length;
+    }
+
+    /**
+     * Number of engines not currently borrowed.
+     */
+    public int getAvailableCount() {
+        return idle.size();
+    }
+
+    /**
+     * Stops all engines and the pool's threads.
+     */
+    public void shutdown() {
+        closed = true;
+        executor.shutdownNow();
+        idle.clear();
+        for (StockfishEngine engine : engines) {
+            engine.shutdown();
+        }
+    }
+}
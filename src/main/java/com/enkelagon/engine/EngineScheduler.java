@@ -0,0 +1,283 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs requests against one engine in priority order on a dedicated thread, so callers
+ * never block their own threads on engine I/O.
+ *
+ * <p>Each request may have a deadline: one still queued at its deadline fails with a
+ * {@link TimeoutException}, one already searching is told to stop and returns its best
+ * move so far. Cancelling a request's future drops it, or stops it if it is running.
+ * A request for a position other than the game's current one (see {@link #supersede})
+ * is dropped the same way, as is an older request of the same priority for a different
+ * position.
+ *
+ * <p>Background analysis runs whenever the queue is empty and is resumed automatically
+ * after a request has interrupted it.
+ */
+public class EngineScheduler {
+
+    /**
+     * Request priorities, most urgent first.
+     */
+    public enum Priority {
+        /** Game boundaries ("ucinewgame"), ahead of every search for the new game. */
+        NEW_GAME,
+        /** Option changes and benchmark pauses, run ahead of any search. */
+        SETTINGS,
+        ENGINE_MOVE,
+        /** Starting or stopping a ponder search on the play engine. */
+        PONDER,
+        HINT,
+        LEGAL_MOVES,
+        ANALYSIS,
+        /** Searches that only prepare the engine, see {@link EngineWarmup}. */
+        WARM_UP
+    }
+
+    private final class Request<T> implements Comparable<Request<?>> {
+        final Priority priority;
+        final UciPosition position;
+        final EnginePool.EngineTask<T> task;
+        final long sequence = sequenceCounter.incrementAndGet();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        // Guarded by this: a stop is only sent while this request's task is running
+        boolean started;
+        boolean finished;
+
+        Request(Priority priority, UciPosition position, EnginePool.EngineTask<T> task) {
+            this.priority = priority;
+            this.position = position;
+            this.task = task;
+        }
+
+        void run() {
+            synchronized (this) {
+                if (result.isDone()) {
+                    // Timed out or cancelled just before it was taken
+                    return;
+                }
+                started = true;
+            }
+            try {
+                result.complete(task.run(engine));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null
+                        ? e.getCause() : e);
+            } finally {
+                synchronized (this) {
+                    finished = true;
+                }
+            }
+        }
+
+        /**
+         * Stops the engine's search if this request's task is still running. Once the task
+         * has returned, the engine's search belongs to a later request and is left alone.
+         */
+        synchronized void stop() {
+            if (started && !finished) {
+                engine.stopSearch();
+            }
+        }
+
+        /** Called when the deadline passes. */
+        synchronized void expire() {
+            if (result.isDone()) {
+                return;
+            }
+            if (started) {
+                stop();
+            } else {
+                result.completeExceptionally(new TimeoutException(priority + " request was not started in time"));
+            }
+        }
+
+        @Override
+        public int compareTo(Request<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final StockfishEngine engine;
+    private final AtomicLong sequenceCounter = new AtomicLong();
+    private final PriorityBlockingQueue<Request<?>> queue = new PriorityBlockingQueue<>();
+    private final ScheduledExecutorService deadlines;
+    private final Thread dispatcher;
+
+    private volatile Request<?> running;
+    private volatile UciPosition backgroundPosition;
+    private volatile boolean shutdown;
+
+    public EngineScheduler(StockfishEngine engine) {
+        this.engine = engine;
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "engine-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "engine-scheduler");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues a task. The position is what the request is about (used to drop it once
+     * superseded) and may be null for requests that do not depend on one.
+     *
+     * @param timeoutMs deadline measured from now, 0 for none
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, UciPosition position, long timeoutMs,
+                                           EnginePool.EngineTask<T> task) {
+        Request<T> request = new Request<>(priority, position, task);
+        if (shutdown) {
+            request.result.completeExceptionally(new IOException("Scheduler is shut down"));
+            return request.result;
+        }
+
+        // A newer request of the same kind makes the older one pointless
+        for (Request<?> queued : queue) {
+            if (queued.priority == priority) {
+                dropIfStale(queued, position);
+            }
+        }
+        Request<?> current = running;
+        if (current != null && current.priority == priority) {
+            dropIfStale(current, position);
+        }
+
+        request.result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                request.stop();
+            }
+        });
+        if (timeoutMs > 0) {
+            deadlines.schedule(request::expire, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        queue.add(request);
+        return request.result;
+    }
+
+    /**
+     * Queues a finite search ("go ...") for a position.
+     */
+    public CompletableFuture<UciEvent.BestMoveEvent> search(Priority priority, UciPosition position,
+                                                            String goCommand, long timeoutMs) {
+        return submit(priority, position, timeoutMs, engine -> engine.search(position, goCommand).join());
+    }
+
+    /**
+     * Drops every queued or running request about a position other than current.
+     */
+    public void supersede(UciPosition current) {
+        for (Request<?> queued : queue) {
+            dropIfStale(queued, current);
+        }
+        Request<?> request = running;
+        if (request != null) {
+            dropIfStale(request, current);
+        }
+    }
+
+    private static void dropIfStale(Request<?> request, UciPosition current) {
+        if (request.position != null && !request.position.equals(current)) {
+            // Cancelling stops the search if it is already running
+            request.result.cancel(false);
+        }
+    }
+
+    /**
+     * Sets the position to analyse whenever no other request is waiting, or null to stop
+     * background analysis.
+     */
+    public void setBackgroundAnalysis(UciPosition position) {
+        backgroundPosition = position;
+        if (!shutdown) {
+            // Wake the dispatcher so the change takes effect once the queue is empty
+            queue.add(new Request<Void>(Priority.ANALYSIS, null, null));
+        }
+    }
+
+    public UciPosition getBackgroundAnalysis() {
+        return backgroundPosition;
+    }
+
+    /**
+     * Number of requests waiting to run.
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    private void dispatchLoop() {
+        UciPosition analysing = null;
+        while (!shutdown) {
+            try {
+                Request<?> request = queue.poll();
+                if (request == null) {
+                    analysing = syncBackground(analysing);
+                    request = queue.take();
+                }
+                if (request.task == null || request.result.isDone()) {
+                    // Wake-up marker, or cancelled / timed out while queued
+                    continue;
+                }
+                analysing = null;
+                running = request;
+                request.run();
+                running = null;
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Starts, moves or stops background analysis to match the requested position.
+     * A request that ran since the last call has stopped it, so it is restarted then.
+     */
+    private UciPosition syncBackground(UciPosition analysing) {
+        UciPosition wanted = backgroundPosition;
+        if (wanted == null) {
+            if (analysing != null) {
+                engine.stopAnalysis();
+            }
+            return null;
+        }
+        if (!wanted.equals(analysing) || engine.getState() == StockfishEngine.State.IDLE) {
+            engine.startAnalysis(wanted);
+        }
+        return wanted;
+    }
+
+    /**
+     * Fails everything still queued and stops the dispatcher. The engine is left running.
+     */
+    public void shutdown() {
+        shutdown = true;
+        backgroundPosition = null;
+        Request<?> request;
+        while ((request = queue.poll()) != null) {
+            request.result.cancel(false);
+        }
+        Request<?> current = running;
+        if (current != null) {
+            current.result.cancel(false);
+        }
+        dispatcher.interrupt();
+        deadlines.shutdownNow();
+    }
+}
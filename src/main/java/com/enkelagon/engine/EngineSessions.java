@@ -0,0 +1,259 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The two engine processes behind the GUI: one plays the game, the other runs live
+ * analysis, so neither has to stop the other. They split the configured thread budget
+ * and hash between them.
+ *
+ * <p>Requests go through each engine's {@link EngineScheduler}; background analysis
+ * is set with {@link EngineScheduler#setBackgroundAnalysis} on the analysis scheduler.
+ *
+ * <p>The split is fixed and only changes with the settings: Stockfish only accepts a new
+ * thread count while idle and clears its hash when the count changes, which would throw
+ * away what pondering and earlier searches of the game have stored.
+ */
+public class EngineSessions {
+
+    private final StockfishEngine play;
+    private final StockfishEngine analysis;
+    private final EngineScheduler playScheduler;
+    private final EngineScheduler analysisScheduler;
+
+    public EngineSessions() {
+        this(new StockfishEngine(), new StockfishEngine());
+    }
+
+    public EngineSessions(String stockfishPath) {
+        this(new StockfishEngine(stockfishPath), new StockfishEngine(stockfishPath));
+    }
+
+    private EngineSessions(StockfishEngine play, StockfishEngine analysis) {
+        this.play = play;
+        this.analysis = analysis;
+        this.playScheduler = new EngineScheduler(play);
+        this.analysisScheduler = new EngineScheduler(analysis);
+        setConfig(new EngineConfig());
+    }
+
+    /**
+     * Starts both engines in parallel.
+     */
+    public void start() throws IOException {
+        CompletableFuture<Void> analysisStart = CompletableFuture.runAsync(() -> {
+            try {
+                analysis.start();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        IOException failure = null;
+        try {
+            play.start();
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            analysisStart.join();
+        } catch (CompletionException e) {
+            if (failure == null) {
+                failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        if (failure != null) {
+            shutdown();
+            throw failure;
+        }
+    }
+
+    /**
+     * Applies new settings. Threads is the combined budget: the play engine gets the
+     * larger half. The hash is split in half. The play engine always searches a single
+     * line, and the analysis engine never ponders.
+     * <p>
+     * On running engines this waits for their searches in progress and for the engines
+     * to reallocate; the GUI uses {@link #applyConfig} instead.
+     *
+     * @throws IllegalArgumentException if either engine does not support an option or
+     *                                  value; neither engine's config is changed then
+     */
+    public synchronized void setConfig(EngineConfig config) {
+        EngineConfig playConfig = playConfig(config);
+        EngineConfig analysisConfig = analysisConfig(config);
+        // Check both first, so a change one engine rejects is not half applied
+        play.validateConfig(playConfig);
+        analysis.validateConfig(analysisConfig);
+        play.setConfig(playConfig);
+        analysis.setConfig(analysisConfig);
+    }
+
+    /**
+     * Applies new settings like {@link #setConfig}, but through the schedulers: each
+     * engine changes once its running request has finished and before anything queued
+     * later, so the caller never waits on engine I/O. A change either engine rejects
+     * fails the future with an {@link IllegalArgumentException} and is not applied.
+     */
+    public CompletableFuture<Void> applyConfig(EngineConfig config) {
+        EngineConfig playConfig = playConfig(config);
+        EngineConfig analysisConfig = analysisConfig(config);
+        try {
+            // Checked against the options the engines reported, without waiting for them
+            play.validateConfig(playConfig);
+            analysis.validateConfig(analysisConfig);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.allOf(
+                playScheduler.submit(EngineScheduler.Priority.SETTINGS, null, 0, engine -> {
+                    engine.setConfig(playConfig);
+                    return null;
+                }),
+                analysisScheduler.submit(EngineScheduler.Priority.SETTINGS, null, 0, engine -> {
+                    engine.setConfig(analysisConfig);
+                    return null;
+                }));
+    }
+
+    private static EngineConfig playConfig(EngineConfig config) {
+        int totalThreads = config.getThreads();
+        EngineConfig playConfig = config.copy();
+        playConfig.setMultiPV(1);
+        playConfig.setHashMB(Math.max(1, config.getHashMB() / 2));
+        playConfig.setThreads(Math.max(1, totalThreads - totalThreads / 2));
+        return playConfig;
+    }
+
+    private static EngineConfig analysisConfig(EngineConfig config) {
+        EngineConfig analysisConfig = config.copy();
+        analysisConfig.setPonder(false);
+        analysisConfig.setHashMB(Math.max(1, config.getHashMB() / 2));
+        analysisConfig.setThreads(Math.max(1, config.getThreads() / 2));
+        return analysisConfig;
+    }
+
+    /**
+     * The engine that plays the game and ponders.
+     */
+    public StockfishEngine getPlayEngine() {
+        return play;
+    }
+
+    /**
+     * The engine that runs live analysis and answers hints.
+     */
+    public StockfishEngine getAnalysisEngine() {
+        return analysis;
+    }
+
+    /**
+     * Request queue for the play engine (engine moves).
+     */
+    public EngineScheduler getPlayScheduler() {
+        return playScheduler;
+    }
+
+    /**
+     * Request queue for the analysis engine (hints and background analysis).
+     */
+    public EngineScheduler getAnalysisScheduler() {
+        return analysisScheduler;
+    }
+
+    /**
+     * Shares one evaluation cache between both engines, or detaches it with null.
+     */
+    public void setEvalCache(EvalCache cache) {
+        play.setEvalCache(cache);
+        analysis.setEvalCache(cache);
+    }
+
+    /**
+     * Drops queued or running requests on both engines that are about another position.
+     */
+    public void supersede(UciPosition current) {
+        playScheduler.supersede(current);
+        analysisScheduler.supersede(current);
+    }
+
+    public boolean isRunning() {
+        return play.isRunning() && analysis.isRunning();
+    }
+
+    /**
+     * Warms up both engines in the background; cancel the returned warm-up before the
+     * first real search so it does not have to wait.
+     */
+    public EngineWarmup warmUp() {
+        EngineWarmup warmup = new EngineWarmup();
+        warmup.submit(playScheduler);
+        warmup.submit(analysisScheduler);
+        return warmup;
+    }
+
+    /**
+     * Starts a new game on both engines, through their schedulers: the reset runs after
+     * the search in progress (call {@link #supersede} first to stop the old game's) and
+     * before anything queued later.
+     */
+    public CompletableFuture<Void> newGame() {
+        EnginePool.EngineTask<Void> reset = engine -> {
+            engine.newGame();
+            return null;
+        };
+        return CompletableFuture.allOf(
+                playScheduler.submit(EngineScheduler.Priority.NEW_GAME, null, 0, reset),
+                analysisScheduler.submit(EngineScheduler.Priority.NEW_GAME, null, 0, reset));
+    }
+
+    /**
+     * Frees the machine for a benchmark. A request on each scheduler stops pondering and
+     * background analysis and then holds its engine, so nothing queued behind it searches
+     * either. The future completes once both engines are idle, with the action that lets
+     * them go again; background analysis then resumes, pondering with the next engine move.
+     */
+    public CompletableFuture<Runnable> pause() {
+        CountDownLatch released = new CountDownLatch(1);
+        return CompletableFuture.allOf(hold(playScheduler, released), hold(analysisScheduler, released))
+                .handle((ignored, error) -> {
+                    Runnable resume = released::countDown;
+                    if (error != null) {
+                        resume.run();
+                        throw error instanceof CompletionException ? (CompletionException) error
+                                : new CompletionException(error);
+                    }
+                    return resume;
+                });
+    }
+
+    private static CompletableFuture<Void> hold(EngineScheduler scheduler, CountDownLatch released) {
+        CompletableFuture<Void> idle = new CompletableFuture<>();
+        scheduler.submit(EngineScheduler.Priority.SETTINGS, null, 0, engine -> {
+            engine.stopPonder();
+            engine.stopAnalysis();
+            idle.complete(null);
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                // Shutting down
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                idle.completeExceptionally(error);
+            }
+        });
+        return idle;
+    }
+
+    public void shutdown() {
+        playScheduler.shutdown();
+        analysisScheduler.shutdown();
+        play.shutdown();
+        analysis.shutdown();
+    }
+}
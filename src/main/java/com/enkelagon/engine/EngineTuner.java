@@ -0,0 +1,218 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.config.ConfigManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Picks Threads and Hash for this machine by running the engine's built-in "bench" at
+ * several settings and measuring speed (nodes per second) and memory (peak resident set
+ * size, where /proc is available).
+ * <p>
+ * Threads: the fewest that reach 95% of the best speed measured, tried up to the number
+ * of physical cores and, on SMT machines, once with every logical processor. Hash: the
+ * largest size tried whose process stays within a quarter of the machine's memory.
+ *
+ * <pre>
+ * java -cp target/classes com.enkelagon.engine.EngineTuner [--stockfish path] [--depth 13] [--save]
+ * </pre>
+ */
+public class EngineTuner {
+
+    private static final int[] HASH_SIZES_MB = {16, 64, 256, 1024, 4096};
+    private static final int THREAD_SWEEP_HASH_MB = 64;
+    private static final double GOOD_ENOUGH = 0.95;
+
+    /**
+     * One bench run.
+     */
+    public record Measurement(int threads, int hashMB, long nodesPerSecond, long peakRssMB) {
+    }
+
+    /**
+     * The chosen settings for a host.
+     */
+    public record Result(String hostKey, int threads, int hashMB, long nodesPerSecond, long peakRssMB) {
+    }
+
+    private final String stockfishPath;
+    private final HardwareProfile hardware;
+    private int benchDepth = 13;
+    private Consumer<Measurement> listener;
+
+    public EngineTuner() {
+        this(StockfishEngine.resolveStockfishPath());
+    }
+
+    public EngineTuner(String stockfishPath) {
+        this.stockfishPath = stockfishPath;
+        this.hardware = HardwareProfile.get();
+    }
+
+    /** Depth of each bench position; higher is slower but steadier. */
+    public void setBenchDepth(int benchDepth) {
+        this.benchDepth = benchDepth;
+    }
+
+    /** Called after every bench run, on the tuning thread. */
+    public void setListener(Consumer<Measurement> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Runs the thread sweep, then the hash sweep. Takes a bench run per setting, i.e.
+     * several seconds each on a typical machine.
+     */
+    public Result tune() throws IOException {
+        // Threads
+        TreeSet<Integer> threadCounts = new TreeSet<>();
+        for (int threads = 1; threads < hardware.getPhysicalCores(); threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(hardware.getPhysicalCores());
+        threadCounts.add(hardware.getLogicalProcessors());
+
+        List<Measurement> threadRuns = new ArrayList<>();
+        for (int threads : threadCounts) {
+            threadRuns.add(bench(threads, THREAD_SWEEP_HASH_MB));
+        }
+        long bestNps = 0;
+        for (Measurement m : threadRuns) {
+            bestNps = Math.max(bestNps, m.nodesPerSecond);
+        }
+        Measurement chosen = threadRuns.get(threadRuns.size() - 1);
+        for (Measurement m : threadRuns) {
+            if (m.nodesPerSecond >= bestNps * GOOD_ENOUGH) {
+                chosen = m;
+                break;
+            }
+        }
+
+        // Hash
+        long memoryBudgetMB = hardware.getTotalMemoryBytes() / 4 >> 20;
+        for (int hashMB : HASH_SIZES_MB) {
+            if (hashMB <= THREAD_SWEEP_HASH_MB || hashMB > memoryBudgetMB) {
+                continue;
+            }
+            Measurement m = bench(chosen.threads, hashMB);
+            if (m.peakRssMB > memoryBudgetMB) {
+                break;
+            }
+            chosen = m;
+        }
+        return new Result(hardware.getHostKey(), chosen.threads, chosen.hashMB, chosen.nodesPerSecond,
+                chosen.peakRssMB);
+    }
+
+    /**
+     * Runs "stockfish bench hash threads depth default depth" in its own process.
+     */
+    public Measurement bench(int threads, int hashMB) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(stockfishPath, "bench", Integer.toString(hashMB),
+                Integer.toString(threads), Integer.toString(benchDepth), "default", "depth");
+        // The summary goes to stderr
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        Path status = Path.of("/proc", Long.toString(process.pid()), "status");
+
+        // Peak RSS is only readable while the process exists, so sample it as it runs
+        long[] peakRssKB = new long[1];
+        Thread sampler = new Thread(() -> {
+            while (process.isAlive()) {
+                peakRssKB[0] = Math.max(peakRssKB[0], readPeakRssKB(status));
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "bench-rss-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long nps = -1;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Nodes/second")) {
+                    nps = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                }
+            }
+        }
+        try {
+            process.waitFor(10, TimeUnit.SECONDS);
+            sampler.join(1000);
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running bench", e);
+        }
+        if (nps < 0) {
+            throw new IOException("No Nodes/second in bench output of " + stockfishPath);
+        }
+
+        Measurement measurement = new Measurement(threads, hashMB, nps, peakRssKB[0] > 0 ? peakRssKB[0] >> 10 : -1);
+        if (listener != null) {
+            listener.accept(measurement);
+        }
+        return measurement;
+    }
+
+    private static long readPeakRssKB(Path status) {
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Process gone or no /proc
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String stockfishPath = null;
+        int depth = 13;
+        boolean save = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stockfish" -> stockfishPath = args[++i];
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--save" -> save = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        EngineTuner tuner = stockfishPath != null ? new EngineTuner(stockfishPath) : new EngineTuner();
+        tuner.setBenchDepth(depth);
+        tuner.setListener(m -> System.out.printf("  threads %3d  hash %5d MB  %,14d nps  peak RSS %,6d MB%n",
+                m.threads, m.hashMB, m.nodesPerSecond, m.peakRssMB));
+        System.out.println("Host: " + HardwareProfile.get());
+        Result result = tuner.tune();
+        System.out.printf("%nBest: threads %d, hash %d MB (%,d nps, %,d MB)%n",
+                result.threads, result.hashMB, result.nodesPerSecond, result.peakRssMB);
+
+        if (save) {
+            ConfigManager config = ConfigManager.getInstance();
+            config.setEngineTuning(result);
+            config.setEngineAutoTune(true);
+            config.saveConfig();
+            System.out.println("Saved for " + result.hostKey);
+        }
+    }
+}
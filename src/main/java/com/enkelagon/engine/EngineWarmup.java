@@ -0,0 +1,94 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Short searches right after an engine has started, so the first real move does not pay
+ * for faulting in the network weights and hash table pages and for spinning up the
+ * search threads.
+ * <p>
+ * The searches run through the engines' schedulers at {@link EngineScheduler.Priority#WARM_UP},
+ * below everything else, and {@link #cancel()} stops them at once (the running search
+ * returns its best move so far and the remaining positions are skipped). They leave
+ * entries in the hash table, which the next "ucinewgame" clears, but never in the
+ * evaluation cache.
+ */
+public class EngineWarmup {
+
+    /** Nodes per position: a few milliseconds each at typical speeds. */
+    public static final long DEFAULT_NODES = 20_000;
+
+    /** Opening, open and closed middlegames, and an endgame. */
+    static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r1bq1rk1/pp2nppb/2np2p1/2p1p3/2P1P3/2NP2P1/PP2NPBP/R1BQ1RK1 w - - 0 9",
+            "8/5pk1/6p1/3R4/1r5P/6P1/5PK1/8 w - - 0 40"
+    };
+
+    private final long nodesPerPosition;
+    private final List<CompletableFuture<Long>> runs = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    public EngineWarmup() {
+        this(DEFAULT_NODES);
+    }
+
+    public EngineWarmup(long nodesPerPosition) {
+        this.nodesPerPosition = nodesPerPosition;
+    }
+
+    /**
+     * Queues the warm-up on a scheduler. The future completes with the time it took in
+     * milliseconds, or is cancelled by {@link #cancel()}.
+     */
+    public synchronized CompletableFuture<Long> submit(EngineScheduler scheduler) {
+        CompletableFuture<Long> run = scheduler.submit(EngineScheduler.Priority.WARM_UP, null, 0, this::run);
+        runs.add(run);
+        if (cancelled) {
+            run.cancel(false);
+        }
+        return run;
+    }
+
+    /**
+     * Searches every position on the calling thread.
+     *
+     * @return the time taken in milliseconds
+     * @throws CancellationException if cancelled before the last position
+     */
+    public long run(StockfishEngine engine) throws IOException {
+        long start = System.nanoTime();
+        String goCommand = "go nodes " + nodesPerPosition;
+        for (String fen : POSITIONS) {
+            if (cancelled) {
+                throw new CancellationException("Warm-up cancelled");
+            }
+            engine.analyseUncached(UciPosition.fromFen(fen), goCommand).join();
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Stops the warm-up on every engine. Safe to call from any thread, any number of times.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        for (CompletableFuture<Long> run : runs) {
+            // Stops the search if it is already running
+            run.cancel(false);
+        }
+    }
+
+    /**
+     * True if every submitted run searched all its positions, i.e. finished before any
+     * cancel.
+     */
+    public synchronized boolean isCompleted() {
+        return !runs.isEmpty() && runs.stream().allMatch(run -> run.isDone() && !run.isCompletedExceptionally());
+    }
+}
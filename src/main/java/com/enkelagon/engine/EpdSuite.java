@@ -0,0 +1,322 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.logic.EpdParser;
+import com.enkelagon.logic.FenParser;
+import com.enkelagon.logic.SanNotation;
+import com.enkelagon.model.Board;
+import com.enkelagon.model.PackedMove;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Test-suite runner: how many "bm" (best move) / "am" (avoid move) problems of an EPD
+ * suite the engine solves within each time and node budget, and how long it needs, for
+ * every combination of Threads and Hash given. Use it to see what each
+ * {@link EngineConfig.Preset} buys before changing its depth or move time.
+ *
+ * <pre>
+ * java -cp target/classes com.enkelagon.engine.EpdSuite wac.epd [--times 100,500,2000]
+ *     [--nodes 100000,1000000] [--threads 1,4] [--hash 16,256] [--engines N] [--stockfish path]
+ * </pre>
+ *
+ * Each problem is searched once per setting, up to the largest time budget or preset
+ * move time (or the largest node budget if no times are given). A problem counts as
+ * solved from the info line where the principal variation started with a correct move and
+ * kept doing so to the end, so every smaller budget is read off that one search. Preset
+ * rows need a time-limited search that lasts at least the preset's move time; with node
+ * budgets only they are listed as not searched. Searches run at full strength: skill
+ * levels are not applied.
+ */
+public class EpdSuite {
+
+    private static final long[] DEFAULT_TIMES = {100, 250, 500, 1000, 2000};
+    private static final long[] DEFAULT_NODES = {10_000, 100_000, 1_000_000};
+
+    /**
+     * One suite position. Moves are packed without flags, as engine output is parsed.
+     */
+    private record Problem(String id, String fen, int[] best, int[] avoid) {
+
+        boolean isCorrect(int move) {
+            int plain = PackedMove.withoutFlags(move);
+            if (best.length > 0) {
+                for (int m : best) {
+                    if (m == plain) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (int m : avoid) {
+                if (m == plain) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * When a problem was solved for good, or unsolved.
+     */
+    private record Solution(boolean solved, long timeMs, long nodes, int depth) {
+        static final Solution UNSOLVED = new Solution(false, 0, 0, 0);
+    }
+
+    /**
+     * Follows the info lines of one search and remembers where the current run of
+     * correct first moves began.
+     */
+    private static final class Tracker {
+        private final Problem problem;
+        private boolean correct;
+        private long timeMs;
+        private long nodes;
+        private int depth;
+
+        Tracker(Problem problem) {
+            this.problem = problem;
+        }
+
+        synchronized void accept(StockfishEngine.AnalysisInfo info) {
+            if (info.multiPv != 1 || info.lowerBound || info.upperBound || info.pvLength == 0) {
+                return;
+            }
+            boolean nowCorrect = problem.isCorrect(info.pv[0]);
+            if (nowCorrect && !correct) {
+                timeMs = info.timeMs;
+                nodes = info.nodes;
+                depth = info.depth;
+            }
+            correct = nowCorrect;
+        }
+
+        synchronized Solution finish(String bestMove) {
+            if (bestMove == null || !problem.isCorrect(PackedMove.parseUci(bestMove)) || !correct) {
+                return Solution.UNSOLVED;
+            }
+            return new Solution(true, timeMs, nodes, depth);
+        }
+    }
+
+    private EpdSuite() {
+        // Command-line tool
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path suite = null;
+        long[] times = null;
+        long[] nodes = null;
+        long[] threadCounts = {1};
+        long[] hashSizes = {16};
+        int engines = 0;
+        String stockfishPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--times" -> times = parseList(args[++i]);
+                case "--nodes" -> nodes = parseList(args[++i]);
+                case "--threads" -> threadCounts = parseList(args[++i]);
+                case "--hash" -> hashSizes = parseList(args[++i]);
+                case "--engines" -> engines = Integer.parseInt(args[++i]);
+                case "--stockfish" -> stockfishPath = args[++i];
+                default -> {
+                    if (args[i].startsWith("--") || suite != null) {
+                        System.err.println("Unknown option: " + args[i]);
+                        System.exit(2);
+                    }
+                    suite = Path.of(args[i]);
+                }
+            }
+        }
+        if (suite == null) {
+            System.err.println("Usage: EpdSuite <suite.epd> [--times MS,...] [--nodes N,...] [--threads N,...]"
+                    + " [--hash MB,...] [--engines N] [--stockfish path]");
+            System.exit(2);
+        }
+        if (times == null && nodes == null) {
+            times = DEFAULT_TIMES;
+            nodes = DEFAULT_NODES;
+        }
+        // Long enough for every preset's move time too, so its row is not cut short
+        long searchTimeMs = 0;
+        if (times != null) {
+            searchTimeMs = times[times.length - 1];
+            for (EngineConfig.Preset preset : EngineConfig.Preset.values()) {
+                if (preset != EngineConfig.Preset.CUSTOM) {
+                    searchTimeMs = Math.max(searchTimeMs, preset.getMoveTimeMs());
+                }
+            }
+        }
+        String goCommand = times != null
+                ? "go movetime " + searchTimeMs
+                : "go nodes " + nodes[nodes.length - 1];
+
+        List<Problem> problems = load(suite);
+        System.out.printf("%s: %d problems, searched with \"%s\"%n", suite.getFileName(), problems.size(), goCommand);
+
+        for (long threads : threadCounts) {
+            for (long hash : hashSizes) {
+                int processes = engines > 0 ? engines
+                        : Math.max(1, HardwareProfile.get().getPhysicalCores() / (int) threads);
+                run(problems, goCommand, searchTimeMs, (int) threads, (int) hash, processes, stockfishPath,
+                        times, nodes);
+            }
+        }
+    }
+
+    private static long[] parseList(String text) {
+        String[] parts = text.split(",");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i].trim());
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Reads the problems of a suite, skipping lines without a usable bm or am.
+     */
+    private static List<Problem> load(Path suite) throws IOException {
+        SanNotation san = new SanNotation();
+        List<Problem> problems = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(suite)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                EpdParser.Record record;
+                try {
+                    record = EpdParser.parseLine(line);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Line " + lineNumber + ": " + e.getMessage());
+                    continue;
+                }
+                if (record == null) {
+                    continue;
+                }
+                Board board = FenParser.parse(record.fen());
+                int[] best = toMoves(san, board, record.getMoves("bm"));
+                int[] avoid = toMoves(san, board, record.getMoves("am"));
+                if (best == null || avoid == null || best.length + avoid.length == 0) {
+                    System.err.println("Line " + lineNumber + ": no usable bm or am, skipped");
+                    continue;
+                }
+                String id = record.getId() != null ? record.getId() : "line " + lineNumber;
+                problems.add(new Problem(id, record.fen(), best, avoid));
+            }
+        }
+        return problems;
+    }
+
+    /** Packs SAN moves, or returns null if one of them is not legal. */
+    private static int[] toMoves(SanNotation san, Board board, List<String> moves) {
+        int[] packed = new int[moves.size()];
+        for (int i = 0; i < packed.length; i++) {
+            int move = san.parse(board, moves.get(i));
+            if (move == PackedMove.NONE) {
+                return null;
+            }
+            packed[i] = PackedMove.withoutFlags(move);
+        }
+        return packed;
+    }
+
+    /**
+     * @param searchTimeMs the "go movetime" of goCommand, or 0 if it is node-limited
+     */
+    private static void run(List<Problem> problems, String goCommand, long searchTimeMs, int threads, int hashMB,
+                            int processes, String stockfishPath, long[] times, long[] nodes) throws IOException {
+        EngineConfig base = new EngineConfig();
+        base.applyPreset(EngineConfig.Preset.HARD);
+        base.setPonder(false);
+        EnginePool pool = stockfishPath != null
+                ? new EnginePool(stockfishPath, processes, base, threads * processes, hashMB * processes)
+                : new EnginePool(processes, base, threads * processes, hashMB * processes);
+        pool.start();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Solution>> searches = new ArrayList<>(problems.size());
+        try {
+            for (Problem problem : problems) {
+                UciPosition position = UciPosition.fromFen(problem.fen);
+                searches.add(pool.submit(engine -> {
+                    // A fresh hash per problem, so results do not depend on the order
+                    engine.newGame();
+                    Tracker tracker = new Tracker(problem);
+                    SearchResult result = engine.analyse(position, goCommand, tracker::accept).join();
+                    return tracker.finish(result.bestMove());
+                }));
+            }
+            CompletableFuture.allOf(searches.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Solution> solutions = new ArrayList<>(searches.size());
+        for (CompletableFuture<Solution> search : searches) {
+            solutions.add(search.join());
+        }
+
+        System.out.printf("%nThreads %d, Hash %d MB: %d engine(s), %.1f s%n", threads, hashMB, processes, seconds);
+        System.out.printf("  %-32s %14s %12s %14s%n", "Budget", "Solved", "Avg time", "Avg nodes");
+        if (times != null) {
+            for (long budget : times) {
+                report(String.format("%,d ms", budget), solutions, Long.MAX_VALUE, budget, Long.MAX_VALUE);
+            }
+        }
+        if (nodes != null) {
+            for (long budget : nodes) {
+                report(String.format("%,d nodes", budget), solutions, Long.MAX_VALUE, Long.MAX_VALUE, budget);
+            }
+        }
+        for (EngineConfig.Preset preset : EngineConfig.Preset.values()) {
+            if (preset == EngineConfig.Preset.CUSTOM) {
+                continue;
+            }
+            String label = String.format("%s (depth %d, %,d ms)", preset.getDisplayName(), preset.getDepth(),
+                    preset.getMoveTimeMs());
+            if (preset.getMoveTimeMs() > searchTimeMs) {
+                System.out.printf("  %-32s %14s%n", label, "not searched");
+                continue;
+            }
+            report(label, solutions, preset.getDepth(), preset.getMoveTimeMs(), Long.MAX_VALUE);
+        }
+
+        StringBuilder unsolved = new StringBuilder();
+        for (int i = 0; i < problems.size(); i++) {
+            if (!solutions.get(i).solved) {
+                unsolved.append(unsolved.length() > 0 ? ", " : "").append(problems.get(i).id);
+            }
+        }
+        if (unsolved.length() > 0) {
+            System.out.println("  Unsolved: " + unsolved);
+        }
+    }
+
+    private static void report(String label, List<Solution> solutions, long maxDepth, long maxTimeMs, long maxNodes) {
+        int solved = 0;
+        long totalTime = 0;
+        long totalNodes = 0;
+        for (Solution solution : solutions) {
+            if (solution.solved && solution.depth <= maxDepth && solution.timeMs <= maxTimeMs
+                    && solution.nodes <= maxNodes) {
+                solved++;
+                totalTime += solution.timeMs;
+                totalNodes += solution.nodes;
+            }
+        }
+        double rate = solutions.isEmpty() ? 0 : solved * 100.0 / solutions.size();
+        System.out.printf("  %-32s %6d %6.1f%% %9d ms %,14d%n", label, solved, rate,
+                solved > 0 ? totalTime / solved : 0, solved > 0 ? totalNodes / solved : 0);
+    }
+}
@@ -0,0 +1,385 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.model.PackedMove;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search results by position key (see {@link com.enkelagon.model.Board#getZobristKey()}),
+ * so revisiting a position does not start from nothing.
+ * <p>
+ * Lookups go to an in-memory LRU map first and then, if a database file was given, to a
+ * SQLite table. New results are written to memory at once and to the database in
+ * batches by a background thread. For each key only the deepest result is kept.
+ */
+public class EvalCache implements AutoCloseable {
+
+    private static final long FLUSH_INTERVAL_MS = 2000;
+    private static final int FLUSH_BATCH = 256;
+
+    /**
+     * One cached search result. Scores are from the side to move's point of view.
+     */
+    public static final class Entry {
+        private final long key;
+        private final int depth;
+        private final int score;
+        private final boolean mate;
+        private final int mateIn;
+        private final long nodes;
+        private final int[] pv;
+
+        public Entry(long key, int depth, int score, boolean mate, int mateIn, long nodes, int[] pv) {
+            this.key = key;
+            this.depth = depth;
+            this.score = score;
+            this.mate = mate;
+            this.mateIn = mateIn;
+            this.nodes = nodes;
+            this.pv = pv;
+        }
+
+        /**
+         * An entry for the best line of a completed depth.
+         */
+        public static Entry of(long key, AnalysisSnapshot.Line line, long nodes) {
+            int[] pv = new int[line.getPvLength()];
+            for (int i = 0; i < pv.length; i++) {
+                pv[i] = line.getPvMove(i);
+            }
+            return new Entry(key, line.getDepth(), line.getScore(), line.isMate(), line.getMateIn(), nodes, pv);
+        }
+
+        /**
+         * An entry for the last info line of a search.
+         */
+        public static Entry of(long key, StockfishEngine.AnalysisInfo info) {
+            int[] pv = new int[info.pvLength];
+            System.arraycopy(info.pv, 0, pv, 0, pv.length);
+            return new Entry(key, info.depth, info.score, info.isMate, info.mateIn, info.nodes, pv);
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public boolean isMate() {
+            return mate;
+        }
+
+        public int getMateIn() {
+            return mateIn;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        /** The best move in packed form, or NONE if the PV is empty. */
+        public int getBestMove() {
+            return pv.length > 0 ? pv[0] : PackedMove.NONE;
+        }
+
+        /** The expected reply in packed form, or NONE. */
+        public int getPonderMove() {
+            return pv.length > 1 ? pv[1] : PackedMove.NONE;
+        }
+
+        public int getPvLength() {
+            return pv.length;
+        }
+
+        public int getPvMove(int index) {
+            return pv[index];
+        }
+
+        /**
+         * Fills an AnalysisInfo as if the engine had just reported this result.
+         */
+        public void copyTo(StockfishEngine.AnalysisInfo info) {
+            info.reset();
+            info.depth = depth;
+            info.hasScore = true;
+            info.score = score;
+            info.isMate = mate;
+            info.mateIn = mateIn;
+            info.nodes = nodes;
+            info.pvLength = Math.min(pv.length, StockfishEngine.AnalysisInfo.MAX_PV);
+            System.arraycopy(pv, 0, info.pv, 0, info.pvLength);
+        }
+
+        private byte[] pvBytes() {
+            ByteBuffer buffer = ByteBuffer.allocate(pv.length * Integer.BYTES);
+            for (int move : pv) {
+                buffer.putInt(move);
+            }
+            return buffer.array();
+        }
+
+        private static int[] pvFromBytes(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int[] pv = new int[bytes.length / Integer.BYTES];
+            for (int i = 0; i < pv.length; i++) {
+                pv[i] = buffer.getInt();
+            }
+            return pv;
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry> memory;
+    /** Entries not yet written to the database, guarded by this. */
+    private Map<Long, Entry> dirty = new LinkedHashMap<>();
+
+    private final Connection connection;
+    private final ScheduledExecutorService writer;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * A cache held in memory only.
+     */
+    public EvalCache(int maxEntries) {
+        this.memory = createLru(maxEntries);
+        this.connection = null;
+        this.writer = null;
+    }
+
+    /**
+     * A cache backed by a SQLite database, created if it does not exist.
+     */
+    public EvalCache(int maxEntries, Path databaseFile) throws IOException {
+        this.memory = createLru(maxEntries);
+        try {
+            Path parent = databaseFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.toAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS eval ("
+                        + "key INTEGER PRIMARY KEY, depth INTEGER NOT NULL, score INTEGER NOT NULL, "
+                        + "mate INTEGER NOT NULL, mate_in INTEGER NOT NULL, nodes INTEGER NOT NULL, pv BLOB NOT NULL)");
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot open evaluation cache " + databaseFile + ": " + e.getMessage(), e);
+        }
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "eval-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static LinkedHashMap<Long, Entry> createLru(int maxEntries) {
+        return new LinkedHashMap<>(Math.min(maxEntries, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for a position, or null.
+     */
+    public Entry get(long key) {
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                hits++;
+                return entry;
+            }
+        }
+
+        Entry stored = load(key);
+        synchronized (this) {
+            if (stored != null) {
+                hits++;
+                memory.putIfAbsent(key, stored);
+            } else {
+                misses++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Returns the cached result if it was searched to at least minDepth, or null.
+     */
+    public Entry get(long key, int minDepth) {
+        Entry entry = get(key);
+        return entry != null && entry.depth >= minDepth ? entry : null;
+    }
+
+    /**
+     * Stores a result unless a deeper one is already cached, in memory or in the database.
+     */
+    public void put(Entry entry) {
+        boolean cached;
+        synchronized (this) {
+            cached = memory.containsKey(entry.key) || dirty.containsKey(entry.key);
+        }
+        // Evicted or never loaded: a deeper row in the database must not be shadowed
+        Entry stored = cached ? null : load(entry.key);
+
+        boolean flushNow;
+        synchronized (this) {
+            Entry existing = memory.get(entry.key);
+            if (existing == null) {
+                existing = dirty.get(entry.key);
+            }
+            if (existing == null) {
+                existing = stored;
+            }
+            if (existing != null && existing.depth > entry.depth) {
+                memory.putIfAbsent(entry.key, existing);
+                return;
+            }
+            memory.put(entry.key, entry);
+            if (connection == null) {
+                return;
+            }
+            dirty.put(entry.key, entry);
+            flushNow = dirty.size() == FLUSH_BATCH;
+        }
+        if (flushNow && !writer.isShutdown()) {
+            writer.execute(this::flush);
+        }
+    }
+
+    private Entry load(long key) {
+        if (connection == null) {
+            return null;
+        }
+        synchronized (connection) {
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT depth, score, mate, mate_in, nodes, pv FROM eval WHERE key = ?")) {
+                select.setLong(1, key);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    return new Entry(key, rs.getInt(1), rs.getInt(2), rs.getInt(3) != 0, rs.getInt(4),
+                            rs.getLong(5), Entry.pvFromBytes(rs.getBytes(6)));
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes pending entries to the database in one transaction.
+     */
+    public void flush() {
+        if (connection == null) {
+            return;
+        }
+        List<Entry> batch;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(dirty.values());
+            dirty = new LinkedHashMap<>();
+        }
+
+        synchronized (connection) {
+            try (PreparedStatement upsert = connection.prepareStatement(
+                    "INSERT INTO eval (key, depth, score, mate, mate_in, nodes, pv) VALUES (?, ?, ?, ?, ?, ?, ?) "
+                            + "ON CONFLICT(key) DO UPDATE SET depth = excluded.depth, score = excluded.score, "
+                            + "mate = excluded.mate, mate_in = excluded.mate_in, nodes = excluded.nodes, "
+                            + "pv = excluded.pv WHERE excluded.depth >= eval.depth")) {
+                connection.setAutoCommit(false);
+                for (Entry entry : batch) {
+                    upsert.setLong(1, entry.key);
+                    upsert.setInt(2, entry.depth);
+                    upsert.setInt(3, entry.score);
+                    upsert.setInt(4, entry.mate ? 1 : 0);
+                    upsert.setInt(5, entry.mateIn);
+                    upsert.setLong(6, entry.nodes);
+                    upsert.setBytes(7, entry.pvBytes());
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                try {
+                    connection.rollback();
+                } catch (SQLException ignored) {
+                    // Nothing more to do
+                }
+            } finally {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                    // Nothing more to do
+                }
+            }
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    /**
+     * Writes pending entries and closes the database.
+     */
+    @Override
+    public void close() {
+        if (connection == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
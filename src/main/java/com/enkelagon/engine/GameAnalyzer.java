@@ -0,0 +1,281 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.logic.PgnHandler;
+import com.enkelagon.model.Board;
+import com.enkelagon.model.Game;
+import com.enkelagon.model.Move;
+import com.enkelagon.model.PackedMove;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Annotates every ply of a game with the engine's evaluation, best move and centipawn
+ * loss. All positions are searched at once across an {@link EnginePool}, so a game takes
+ * about as long as its slowest position when the pool is large enough.
+ * <p>
+ * The centipawn loss of a move is the evaluation before it minus the evaluation after
+ * it, both from the mover's point of view, with scores capped at +/-1000 so that a
+ * missed mate does not dwarf everything else.
+ */
+public class GameAnalyzer {
+
+    /** Scores are capped at this many centipawns when computing the loss. */
+    public static final int SCORE_CAP = 1000;
+
+    /**
+     * Move quality by centipawn loss.
+     */
+    public enum Classification {
+        GOOD("", 0, ""),
+        INACCURACY("Inaccuracy", 50, "?!"),
+        MISTAKE("Mistake", 100, "?"),
+        BLUNDER("Blunder", 300, "??");
+
+        private final String displayName;
+        private final int minLoss;
+        private final String symbol;
+
+        Classification(String displayName, int minLoss, String symbol) {
+            this.displayName = displayName;
+            this.minLoss = minLoss;
+            this.symbol = symbol;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /** Smallest centipawn loss that earns this label. */
+        public int getMinLoss() {
+            return minLoss;
+        }
+
+        /** PGN move suffix, e.g. "?!". */
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public static Classification of(int centipawnLoss) {
+            if (centipawnLoss >= BLUNDER.minLoss) return BLUNDER;
+            if (centipawnLoss >= MISTAKE.minLoss) return MISTAKE;
+            if (centipawnLoss >= INACCURACY.minLoss) return INACCURACY;
+            return GOOD;
+        }
+    }
+
+    /**
+     * The analysis of one move of the game.
+     */
+    public static final class PlyResult {
+        private final int ply;
+        private final String move;
+        private final String bestMove;
+        private final SearchResult before;
+        private final SearchResult after;
+        private final boolean whiteMoved;
+        private final int centipawnLoss;
+        private final Classification classification;
+
+        PlyResult(int ply, String move, boolean whiteMoved, SearchResult before, SearchResult after) {
+            this.ply = ply;
+            this.move = move;
+            this.whiteMoved = whiteMoved;
+            this.before = before;
+            this.after = after;
+            this.bestMove = before.bestMove();
+
+            if (move.equals(bestMove)) {
+                // Same move, any difference is search noise
+                this.centipawnLoss = 0;
+            } else {
+                int evalBefore = capped(before.scoreCp(SCORE_CAP * 10));
+                int evalAfter = -capped(after.scoreCp(SCORE_CAP * 10));
+                this.centipawnLoss = Math.max(0, evalBefore - evalAfter);
+            }
+            this.classification = Classification.of(centipawnLoss);
+        }
+
+        private static int capped(int score) {
+            return Math.max(-SCORE_CAP, Math.min(SCORE_CAP, score));
+        }
+
+        /** Zero-based index of the move in the game. */
+        public int getPly() {
+            return ply;
+        }
+
+        /** The move played, in UCI notation. */
+        public String getMove() {
+            return move;
+        }
+
+        /** The engine's choice in the position before the move, or null if none. */
+        public String getBestMove() {
+            return bestMove;
+        }
+
+        public boolean isWhiteMove() {
+            return whiteMoved;
+        }
+
+        /** Search of the position before the move. */
+        public SearchResult getBefore() {
+            return before;
+        }
+
+        /** Search of the position after the move. */
+        public SearchResult getAfter() {
+            return after;
+        }
+
+        public int getCentipawnLoss() {
+            return centipawnLoss;
+        }
+
+        public Classification getClassification() {
+            return classification;
+        }
+
+        /**
+         * Evaluation after the move from White's point of view, in PGN "[%eval]" form:
+         * pawns with two decimals, or "#N" / "#-N" for a mate.
+         */
+        public String getEvalText() {
+            AnalysisSnapshot.Line line = after.line();
+            if (line == null) {
+                return "0.00";
+            }
+            // The side to move after the move is the opponent of the mover
+            int sign = whiteMoved ? -1 : 1;
+            if (line.isMate()) {
+                return "#" + sign * line.getMateIn();
+            }
+            return String.format(Locale.ROOT, "%.2f", sign * line.getScore() / 100.0);
+        }
+    }
+
+    /**
+     * Receives analysis progress, on whichever pool thread finished the work.
+     */
+    public interface ProgressListener {
+        /**
+         * Called once per ply, as soon as both positions around it have been searched.
+         */
+        void onPly(PlyResult result, int positionsDone, int positionsTotal);
+    }
+
+    private final EnginePool pool;
+
+    public GameAnalyzer(EnginePool pool) {
+        this.pool = pool;
+    }
+
+    /** A fixed depth per position. */
+    public static String depthBudget(int depth) {
+        return "go depth " + depth;
+    }
+
+    /** A fixed node count per position, which gives the same result on any machine. */
+    public static String nodeBudget(long nodes) {
+        return "go nodes " + nodes;
+    }
+
+    /**
+     * Analyses every ply of a game. Each position (including the final one) is searched
+     * once with goCommand, all in parallel on the pool.
+     *
+     * @param listener notified per ply as results arrive, may be null
+     * @return one result per ply, in game order
+     */
+    public CompletableFuture<List<PlyResult>> analyze(Game game, String goCommand, ProgressListener listener) {
+        List<Move> history = game.getMoveHistory();
+        int plies = history.size();
+
+        // Every position carries the moves that led to it, so repetitions are seen
+        List<UciPosition> positions = new ArrayList<>(plies + 1);
+        List<String> moves = new ArrayList<>(plies);
+        Board board = new Board();
+        board.loadFromFen(game.getStartFen());
+        boolean whiteFirst = board.isWhiteToMove();
+        UciPosition position = UciPosition.fromFen(game.getStartFen());
+        positions.add(position);
+        for (Move move : history) {
+            int packed = PackedMove.fromMove(move);
+            moves.add(PackedMove.toUci(packed));
+            board.makeMove(packed);
+            position = position.withMove(packed, board.toFen());
+            positions.add(position);
+        }
+
+        SearchResult[] searched = new SearchResult[positions.size()];
+        PlyResult[] results = new PlyResult[plies];
+        int[] done = new int[1];
+
+        List<CompletableFuture<SearchResult>> searches = new ArrayList<>(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            int index = i;
+            UciPosition target = positions.get(i);
+            searches.add(pool.submit(engine -> engine.analyse(target, goCommand).join())
+                    .thenApply(result -> {
+                        List<PlyResult> ready = new ArrayList<>(2);
+                        int positionsDone;
+                        synchronized (searched) {
+                            searched[index] = result;
+                            positionsDone = ++done[0];
+                            // This position completes the ply before it and the ply after it
+                            for (int ply = index - 1; ply <= index; ply++) {
+                                if (ply >= 0 && ply < plies && searched[ply] != null && searched[ply + 1] != null) {
+                                    boolean whiteMoved = (ply % 2 == 0) == whiteFirst;
+                                    results[ply] = new PlyResult(ply, moves.get(ply), whiteMoved,
+                                            searched[ply], searched[ply + 1]);
+                                    ready.add(results[ply]);
+                                }
+                            }
+                        }
+                        if (listener != null) {
+                            for (PlyResult plyResult : ready) {
+                                listener.onPly(plyResult, positionsDone, positions.size());
+                            }
+                        }
+                        return result;
+                    }));
+        }
+
+        return CompletableFuture.allOf(searches.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<PlyResult> list = new ArrayList<>(plies);
+                    Collections.addAll(list, results);
+                    return list;
+                });
+    }
+
+    /**
+     * One PGN comment per ply: the "[%eval]" annotation, followed by the label and the
+     * engine's preferred move for inaccuracies and worse.
+     */
+    public static List<String> toPgnComments(List<PlyResult> results) {
+        List<String> comments = new ArrayList<>(results.size());
+        for (PlyResult result : results) {
+            StringBuilder comment = new StringBuilder("[%eval ").append(result.getEvalText()).append(']');
+            if (result.getClassification() != Classification.GOOD) {
+                comment.append(' ').append(result.getClassification().getDisplayName()).append('.');
+                if (result.getBestMove() != null) {
+                    comment.append(" Best was ").append(result.getBestMove()).append('.');
+                }
+            }
+            comments.add(comment.toString());
+        }
+        return comments;
+    }
+
+    /**
+     * The game as PGN with the analysis as move comments.
+     */
+    public static String exportAnnotatedPgn(Game game, List<PlyResult> results) {
+        return new PgnHandler().exportToPgn(game, toPgnComments(results));
+    }
+}
@@ -0,0 +1,126 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the machine offers an engine: CPU model, physical cores and logical processors,
+ * and memory. Detected once from /proc/cpuinfo where available, otherwise from the JVM
+ * (which cannot tell SMT siblings apart, so every processor counts as a core).
+ * <p>
+ * Stockfish gains little from the second hardware thread of a core, and two engines
+ * whose threads land on sibling threads slow each other down, so thread budgets here
+ * are based on physical cores.
+ */
+public final class HardwareProfile {
+
+    private static HardwareProfile instance;
+
+    private final String cpuModel;
+    private final int physicalCores;
+    private final int logicalProcessors;
+    private final long totalMemoryBytes;
+
+    private HardwareProfile(String cpuModel, int physicalCores, int logicalProcessors, long totalMemoryBytes) {
+        this.cpuModel = cpuModel;
+        this.physicalCores = physicalCores;
+        this.logicalProcessors = logicalProcessors;
+        this.totalMemoryBytes = totalMemoryBytes;
+    }
+
+    public static synchronized HardwareProfile get() {
+        if (instance == null) {
+            instance = detect();
+        }
+        return instance;
+    }
+
+    private static HardwareProfile detect() {
+        int logical = Runtime.getRuntime().availableProcessors();
+        String model = System.getProperty("os.arch");
+        int physical = logical;
+
+        try {
+            List<String> lines = Files.readAllLines(Path.of("/proc/cpuinfo"));
+            Set<String> cores = new HashSet<>();
+            String physicalId = "0";
+            for (String line : lines) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                switch (key) {
+                    case "model name" -> model = value;
+                    case "physical id" -> physicalId = value;
+                    case "core id" -> cores.add(physicalId + ":" + value);
+                    default -> {
+                        // Not needed
+                    }
+                }
+            }
+            if (!cores.isEmpty()) {
+                // cpuinfo lists every processor, the JVM may be limited to fewer
+                physical = Math.min(cores.size(), logical);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not Linux: treat every processor as a core
+        }
+
+        long memory;
+        try {
+            memory = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                    .getTotalMemorySize();
+        } catch (RuntimeException | LinkageError e) {
+            memory = Runtime.getRuntime().maxMemory();
+        }
+        return new HardwareProfile(model, Math.max(1, physical), logical, memory);
+    }
+
+    public String getCpuModel() {
+        return cpuModel;
+    }
+
+    public int getPhysicalCores() {
+        return physicalCores;
+    }
+
+    public int getLogicalProcessors() {
+        return logicalProcessors;
+    }
+
+    /** True if cores run more than one hardware thread (Hyper-Threading, SMT). */
+    public boolean isSmt() {
+        return logicalProcessors > physicalCores;
+    }
+
+    public long getTotalMemoryBytes() {
+        return totalMemoryBytes;
+    }
+
+    /**
+     * Identifies this kind of machine for stored tuning results: CPU model and core counts.
+     */
+    public String getHostKey() {
+        return cpuModel + " / " + physicalCores + "C" + logicalProcessors + "T";
+    }
+
+    /**
+     * Threads each of several engines searching at the same time should get, so that
+     * together they use every physical core without doubling up on SMT siblings.
+     */
+    public int threadsPerEngine(int engines) {
+        return Math.max(1, physicalCores / Math.max(1, engines));
+    }
+
+    @Override
+    public String toString() {
+        return getHostKey() + (isSmt() ? " (SMT)" : "") + ", " + (totalMemoryBytes >> 20) + " MB";
+    }
+}
@@ -0,0 +1,67 @@
+package com.enkelagon.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Groups MultiPV info lines into {@link AnalysisSnapshot}s. Lines are copied into
+ * preallocated per-rank buffers as they arrive; a snapshot is built and published only
+ * when the last rank reports an exact score, i.e. once a depth iteration is complete.
+ * Intermediate lowerbound/upperbound lines are kept but never published on their own.
+ */
+public final class MultiPvCollector implements Consumer<StockfishEngine.AnalysisInfo> {
+
+    private final int expectedLines;
+    private final Consumer<AnalysisSnapshot> listener;
+    private final StockfishEngine.AnalysisInfo[] lines;
+    private volatile AnalysisSnapshot latest;
+
+    /**
+     * @param expectedLines lines per iteration: the MultiPV setting, capped at the
+     *                      number of legal moves
+     * @param listener      receives each completed snapshot (may be null)
+     */
+    public MultiPvCollector(int expectedLines, Consumer<AnalysisSnapshot> listener) {
+        this.expectedLines = Math.max(0, expectedLines);
+        this.listener = listener;
+        this.lines = new StockfishEngine.AnalysisInfo[this.expectedLines];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = new StockfishEngine.AnalysisInfo();
+        }
+    }
+
+    @Override
+    public void accept(StockfishEngine.AnalysisInfo info) {
+        int rank = info.multiPv;
+        if (!info.hasScore || rank < 1 || rank > expectedLines) {
+            return;
+        }
+        lines[rank - 1].copyFrom(info);
+        if (rank == expectedLines && !info.lowerBound && !info.upperBound) {
+            publish(info);
+        }
+    }
+
+    private void publish(StockfishEngine.AnalysisInfo last) {
+        List<AnalysisSnapshot.Line> snapshotLines = new ArrayList<>(expectedLines);
+        for (StockfishEngine.AnalysisInfo line : lines) {
+            if (line.depth > 0) {
+                snapshotLines.add(new AnalysisSnapshot.Line(line));
+            }
+        }
+        AnalysisSnapshot snapshot = new AnalysisSnapshot(last.depth, last.nodes, last.nps, last.timeMs,
+                last.hashfull, last.tbHits, snapshotLines);
+        latest = snapshot;
+        if (listener != null) {
+            listener.accept(snapshot);
+        }
+    }
+
+    /**
+     * Returns the most recently published snapshot, or null if no depth has completed.
+     */
+    public AnalysisSnapshot getLatest() {
+        return latest;
+    }
+}
@@ -0,0 +1,306 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.model.PackedMove;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-size evaluation table held outside the Java heap, laid out like an engine
+ * transposition table, for batch jobs that evaluate millions of positions.
+ * <p>
+ * Each 16-byte slot holds the position key XORed with a packed data word, followed by
+ * the data word itself: best move, score, depth and generation. Four slots form a
+ * 64-byte bucket, and a key can only live in the bucket its upper bits select.
+ * Reads take no lock: a slot whose two words were written by different stores fails the
+ * XOR check and reads as a miss. Writes lock one of a fixed set of stripes.
+ * <p>
+ * When a bucket is full, the slot to replace is the one with the lowest depth, counting
+ * entries from older generations (see {@link #newGeneration()}) as shallower.
+ * <p>
+ * A table opened on a file is memory-mapped, so its contents survive restarts.
+ */
+public class OffHeapEvalTable implements AutoCloseable {
+
+    private static final int SLOT_BYTES = 16;
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int BUCKET_BYTES = SLOT_BYTES * SLOTS_PER_BUCKET;
+    /** Buckets per segment; one ByteBuffer can address at most 2 GB. */
+    private static final int SEGMENT_SHIFT = 24;
+    private static final int SEGMENT_BUCKETS = 1 << SEGMENT_SHIFT;
+    private static final int STRIPES = 1024;
+
+    private static final int HEADER_BYTES = 64;
+    private static final long MAGIC = 0x454E4B4C4554424CL;
+    private static final int VERSION = 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // Data word layout
+    private static final int MOVE_BITS = 17;
+    private static final int SCORE_SHIFT = 17;
+    private static final int DEPTH_SHIFT = 33;
+    private static final int GENERATION_SHIFT = 41;
+    private static final long MATE_FLAG = 1L << 49;
+    private static final long VALID_FLAG = 1L << 50;
+
+    private final long bucketCount;
+    private final ByteBuffer[] segments;
+    private final Object[] stripes = new Object[STRIPES];
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile int generation;
+
+    private OffHeapEvalTable(long bucketCount, ByteBuffer[] segments, FileChannel channel, MappedByteBuffer header) {
+        this.bucketCount = bucketCount;
+        this.segments = segments;
+        this.channel = channel;
+        this.header = header;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Allocates a table of about sizeMB megabytes in direct memory.
+     */
+    public static OffHeapEvalTable allocate(int sizeMB) {
+        long buckets = bucketsFor(sizeMB);
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(buckets)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect(segmentBytes(buckets, i)).order(ByteOrder.nativeOrder());
+        }
+        return new OffHeapEvalTable(buckets, segments, null, null);
+    }
+
+    /**
+     * Opens (or creates) a table of about sizeMB megabytes mapped onto a file. A file
+     * written with a different size or format is cleared.
+     */
+    public static OffHeapEvalTable open(Path file, int sizeMB) throws IOException {
+        long buckets = bucketsFor(sizeMB);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long fileBytes = HEADER_BYTES + buckets * BUCKET_BYTES;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.nativeOrder());
+            boolean compatible = channel.size() == fileBytes
+                    && header.getLong(0) == MAGIC
+                    && header.getInt(8) == VERSION
+                    && header.getLong(16) == buckets;
+            if (!compatible) {
+                channel.truncate(HEADER_BYTES);
+                // Re-extending the file fills it with zeros, i.e. empty slots
+                channel.write(ByteBuffer.allocate(1), fileBytes - 1);
+                header.putLong(0, MAGIC);
+                header.putInt(8, VERSION);
+                header.putLong(16, buckets);
+                header.putInt(24, 0);
+            }
+
+            ByteBuffer[] segments = new ByteBuffer[segmentCount(buckets)];
+            long offset = HEADER_BYTES;
+            for (int i = 0; i < segments.length; i++) {
+                int bytes = segmentBytes(buckets, i);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes).order(ByteOrder.nativeOrder());
+                offset += bytes;
+            }
+            OffHeapEvalTable table = new OffHeapEvalTable(buckets, segments, channel, header);
+            table.generation = header.getInt(24) & 0xFF;
+            return table;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long bucketsFor(int sizeMB) {
+        return Math.max(1, (long) sizeMB * 1024 * 1024 / BUCKET_BYTES);
+    }
+
+    private static int segmentCount(long buckets) {
+        return (int) ((buckets + SEGMENT_BUCKETS - 1) >>> SEGMENT_SHIFT);
+    }
+
+    private static int segmentBytes(long buckets, int segment) {
+        long remaining = buckets - ((long) segment << SEGMENT_SHIFT);
+        return (int) Math.min(SEGMENT_BUCKETS, remaining) * BUCKET_BYTES;
+    }
+
+    /**
+     * Looks up a position and returns its packed data word, or 0 if it is not stored.
+     * Decode the result with {@link #move}, {@link #score}, {@link #depth} and {@link #isMate}.
+     */
+    public long probe(long key) {
+        long bucket = bucketOf(key);
+        ByteBuffer segment = segments[(int) (bucket >>> SEGMENT_SHIFT)];
+        int base = (int) (bucket & (SEGMENT_BUCKETS - 1)) * BUCKET_BYTES;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            int slot = base + i * SLOT_BYTES;
+            long data = (long) LONGS.getAcquire(segment, slot + 8);
+            long check = (long) LONGS.getAcquire(segment, slot);
+            if ((data & VALID_FLAG) != 0 && (check ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a result. A result for the same key is replaced unless it is from the current
+     * generation and clearly deeper; otherwise an empty slot or the least valuable entry
+     * of the bucket is used.
+     *
+     * @param move  packed best move (see {@link PackedMove}), or NONE
+     * @param score centipawns, or moves to mate if mate is set
+     */
+    public void store(long key, int move, int score, boolean mate, int depth) {
+        int gen = generation;
+        long data = pack(move, score, mate, depth, gen);
+        long bucket = bucketOf(key);
+        ByteBuffer segment = segments[(int) (bucket >>> SEGMENT_SHIFT)];
+        int base = (int) (bucket & (SEGMENT_BUCKETS - 1)) * BUCKET_BYTES;
+
+        synchronized (stripes[(int) (bucket & (STRIPES - 1))]) {
+            // Same key first, then an empty slot, then the least valuable entry
+            int target = -1;
+            int targetValue = Integer.MAX_VALUE;
+            for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+                int slot = base + i * SLOT_BYTES;
+                long oldData = (long) LONGS.getAcquire(segment, slot + 8);
+                long oldCheck = (long) LONGS.getAcquire(segment, slot);
+                if ((oldData & VALID_FLAG) == 0) {
+                    if (targetValue != Integer.MIN_VALUE) {
+                        target = slot;
+                        targetValue = Integer.MIN_VALUE;
+                    }
+                    continue;
+                }
+                if ((oldCheck ^ oldData) == key) {
+                    if (generationOf(oldData) == gen && depth(oldData) > depth + 2) {
+                        return;
+                    }
+                    target = slot;
+                    break;
+                }
+                int age = (gen - generationOf(oldData)) & 0xFF;
+                int value = depth(oldData) - 8 * age;
+                if (value < targetValue) {
+                    target = slot;
+                    targetValue = value;
+                }
+            }
+
+            // Data first, then the check word: a reader that sees the new check word also
+            // sees the new data; one that sees only one of them fails the XOR test
+            LONGS.setRelease(segment, target + 8, data);
+            LONGS.setRelease(segment, target, key ^ data);
+        }
+    }
+
+    /**
+     * Starts a new generation: entries stored from now on are preferred over older ones
+     * when a bucket is full.
+     */
+    public synchronized void newGeneration() {
+        generation = (generation + 1) & 0xFF;
+        if (header != null) {
+            header.putInt(24, generation);
+        }
+    }
+
+    private long bucketOf(long key) {
+        // Upper key bits, scaled to the bucket count without a modulo
+        return Math.multiplyHigh(key & Long.MAX_VALUE, bucketCount << 1);
+    }
+
+    private static long pack(int move, int score, boolean mate, int depth, int generation) {
+        return (move & ((1L << MOVE_BITS) - 1))
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) Math.max(0, Math.min(depth, 255)) << DEPTH_SHIFT)
+                | ((long) generation << GENERATION_SHIFT)
+                | (mate ? MATE_FLAG : 0)
+                | VALID_FLAG;
+    }
+
+    /** The best move of a probed data word, or NONE. */
+    public static int move(long data) {
+        return (int) (data & ((1L << MOVE_BITS) - 1));
+    }
+
+    /** Centipawns, or moves to mate if {@link #isMate} (negative when being mated). */
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static boolean isMate(long data) {
+        return (data & MATE_FLAG) != 0;
+    }
+
+    private static int generationOf(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Number of positions the table can hold.
+     */
+    public long capacity() {
+        return bucketCount * SLOTS_PER_BUCKET;
+    }
+
+    /**
+     * Estimates how full the table is, in permille, from a sample of buckets.
+     */
+    public int hashfull() {
+        long sampleBuckets = Math.min(bucketCount, 250);
+        int used = 0;
+        for (long bucket = 0; bucket < sampleBuckets; bucket++) {
+            ByteBuffer segment = segments[(int) (bucket >>> SEGMENT_SHIFT)];
+            int base = (int) (bucket & (SEGMENT_BUCKETS - 1)) * BUCKET_BYTES;
+            for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+                long data = (long) LONGS.getAcquire(segment, base + i * SLOT_BYTES + 8);
+                if ((data & VALID_FLAG) != 0 && generationOf(data) == generation) {
+                    used++;
+                }
+            }
+        }
+        return (int) (used * 1000 / (sampleBuckets * SLOTS_PER_BUCKET));
+    }
+
+    /**
+     * Writes a mapped table's contents to its file. Does nothing for an in-memory table.
+     */
+    public void flush() {
+        if (channel == null) {
+            return;
+        }
+        header.force();
+        for (ByteBuffer segment : segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+    }
+
+    /**
+     * Flushes a mapped table and closes its file. The memory itself is released when the
+     * table is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+}
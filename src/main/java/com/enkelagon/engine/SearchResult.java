@@ -0,0 +1,24 @@
+package com.enkelagon.engine;
+
+/**
+ * Outcome of a finite search: the bestmove reply together with the last exact principal
+ * line the engine reported. The line is null if the engine reported none, and its PV is
+ * empty if the position has no legal moves.
+ */
+public record SearchResult(String bestMove, String ponder, AnalysisSnapshot.Line line, long nodes) {
+
+    /**
+     * Score in centipawns from the side to move's point of view, with a mate counted as
+     * +/-(mateCap - moves to mate), so that faster mates score higher.
+     */
+    public int scoreCp(int mateCap) {
+        if (line == null) {
+            return 0;
+        }
+        if (line.isMate()) {
+            int mateIn = line.getMateIn();
+            return mateIn > 0 ? mateCap - mateIn : -mateCap - mateIn;
+        }
+        return line.getScore();
+    }
+}
@@ -1,32 +1,160 @@
 package com.enkelagon.engine;
 
+import com.enkelagon.logic.FenParser;
 import com.enkelagon.logic.MoveGenerator;
 import com.enkelagon.model.Board;
+import com.enkelagon.model.Move;
+import com.enkelagon.model.PackedMove;
 
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 /**
  * Manages communication with the Stockfish chess engine.
+ * <p>
+ * A dedicated reader thread parses every line of engine output into a {@link UciEvent}
+ * and completes the request it answers: "readyok" completes the oldest pending
+ * "isready", and "bestmove" (or a perft total) completes the oldest pending "go".
+ * Commands can therefore be written back to back without sleeping or draining output.
+ * <p>
+ * Searches follow {@link State}: a new search first brings the engine back to IDLE
+ * (stopping an infinite search and waiting only for its bestmove), then sends
+ * "position" and "go" in a single write. "isready" is only used after the handshake
+ * and after changing options, where the engine may need time to reallocate.
  */
 public class StockfishEngine {
 
+    /**
+     * Search state: IDLE → SEARCHING on "go", SEARCHING → STOPPING on "stop",
+     * and back to IDLE when the last outstanding bestmove arrives.
+     */
+    public enum State {
+        IDLE,
+        SEARCHING,
+        STOPPING
+    }
+
+    /**
+     * Search information from one UCI "info" line. Instances are reused by the engine's
+     * reader, so consumers that keep one past the callback must {@link #copyFrom} it.
+     */
     public static class AnalysisInfo {
+        /** Longest principal variation kept; later moves are dropped. */
+        public static final int MAX_PV = 128;
+
         public int depth;
         public int selectiveDepth;
+        public int multiPv = 1;
         public long nodes;
-        public int nps;
+        public long nps;
+        public long timeMs;
+        public int hashfull;
+        public long tbHits;
+        public boolean hasScore;
         public int score;
         public boolean isMate;
         public int mateIn;
-        public String bestMove;
-        public String ponder;
-        public String[] principalVariation;
+        public boolean lowerBound;
+        public boolean upperBound;
+        public boolean hasWdl;
+        public int wdlWin;
+        public int wdlDraw;
+        public int wdlLoss;
+        /** Move currently searched (packed, see {@link PackedMove}), or NONE. */
+        public int currMove;
+        public int currMoveNumber;
+        /** Principal variation as packed moves; only the first pvLength entries are valid. */
+        public final int[] pv = new int[MAX_PV];
+        public int pvLength;
+
+        /**
+         * Clears all fields so the instance can be filled from another line.
+         */
+        public void reset() {
+            depth = 0;
+            selectiveDepth = 0;
+            multiPv = 1;
+            nodes = 0;
+            nps = 0;
+            timeMs = 0;
+            hashfull = 0;
+            tbHits = 0;
+            hasScore = false;
+            score = 0;
+            isMate = false;
+            mateIn = 0;
+            lowerBound = false;
+            upperBound = false;
+            hasWdl = false;
+            wdlWin = 0;
+            wdlDraw = 0;
+            wdlLoss = 0;
+            currMove = PackedMove.NONE;
+            currMoveNumber = 0;
+            pvLength = 0;
+        }
+
+        /**
+         * Copies every field from another instance without allocating.
+         */
+        public void copyFrom(AnalysisInfo other) {
+            depth = other.depth;
+            selectiveDepth = other.selectiveDepth;
+            multiPv = other.multiPv;
+            nodes = other.nodes;
+            nps = other.nps;
+            timeMs = other.timeMs;
+            hashfull = other.hashfull;
+            tbHits = other.tbHits;
+            hasScore = other.hasScore;
+            score = other.score;
+            isMate = other.isMate;
+            mateIn = other.mateIn;
+            lowerBound = other.lowerBound;
+            upperBound = other.upperBound;
+            hasWdl = other.hasWdl;
+            wdlWin = other.wdlWin;
+            wdlDraw = other.wdlDraw;
+            wdlLoss = other.wdlLoss;
+            currMove = other.currMove;
+            currMoveNumber = other.currMoveNumber;
+            System.arraycopy(other.pv, 0, pv, 0, other.pvLength);
+            pvLength = other.pvLength;
+        }
+
+        /**
+         * Returns the first move of the principal variation, or NONE.
+         */
+        public int getBestMove() {
+            return pvLength > 0 ? pv[0] : PackedMove.NONE;
+        }
+
+        /**
+         * Appends up to maxMoves of the principal variation in UCI notation, space separated.
+         */
+        public StringBuilder appendPv(StringBuilder sb, int maxMoves) {
+            int count = Math.min(pvLength, maxMoves);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                PackedMove.appendUci(sb, pv[i]);
+            }
+            return sb;
+        }
 
         @Override
         public String toString() {
@@ -37,18 +165,68 @@ public class StockfishEngine {
         }
     }
 
+    /** How long to wait for handshake replies and for a stopped search to report bestmove. */
+    private static final long REPLY_TIMEOUT_MS = 10_000;
+    /** Depth of {@link #evaluate}. */
+    private static final int EVALUATE_DEPTH = 10;
+
+    private static final UciEvent.ReadyOkEvent READY_OK = new UciEvent.ReadyOkEvent();
+    private static final UciEvent.UciOkEvent UCI_OK = new UciEvent.UciOkEvent();
+
     private final String stockfishPath;
     private Process process;
-    private BufferedReader reader;
+    private UciLineReader reader;
     private BufferedWriter writer;
+    private Thread readerThread;
     private EngineConfig config;
     private volatile boolean running;
-    private volatile boolean analyzing;
-    private final ExecutorService executor;
     private final MoveGenerator moveGenerator;
 
-    private Consumer<AnalysisInfo> analysisCallback;
-    private Consumer<String> bestMoveCallback;
+    /** Searches started with "go", oldest first; the head receives info lines. */
+    private final Deque<Search> searches = new ConcurrentLinkedDeque<>();
+    /** Outstanding "isready" requests. */
+    private final Queue<CompletableFuture<Void>> pendingReady = new ConcurrentLinkedQueue<>();
+    private volatile CompletableFuture<Void> pendingUciOk = new CompletableFuture<>();
+    private final List<UciEvent.OptionEvent> options = new CopyOnWriteArrayList<>();
+    /**
+     * The value each option has in the running process, by lower-case name: the advertised
+     * default until something else is sent. Guarded by this.
+     */
+    private final Map<String, String> appliedOptions = new HashMap<>();
+    private final List<Consumer<UciEvent>> eventListeners = new CopyOnWriteArrayList<>();
+    /** Written under the searches lock so it stays consistent with the queue. */
+    private volatile State state = State.IDLE;
+    /** The most recently started search, or null. Guarded by this. */
+    private Search current;
+
+    /** Reused for every info line; see {@link #setAnalysisCallback}. */
+    private final AnalysisInfo analysisInfo = new AnalysisInfo();
+    private final UciEvent.InfoEvent infoEvent = new UciEvent.InfoEvent(analysisInfo);
+    private volatile Consumer<AnalysisInfo> analysisCallback;
+    private volatile Consumer<AnalysisSnapshot> snapshotCallback;
+    /** Collector of the current (or last) analysis. */
+    private volatile MultiPvCollector analysisCollector;
+    private volatile Consumer<String> bestMoveCallback;
+    private volatile EvalCache evalCache;
+
+    /**
+     * One "go" command, completed with the BestMoveEvent or PerftEvent that ends it.
+     */
+    private static final class Search {
+        final UciPosition position;
+        final boolean infinite;
+        final Consumer<AnalysisInfo> infoListener;
+        final CompletableFuture<UciEvent> result = new CompletableFuture<>();
+        volatile boolean stopRequested;
+        /** True for "go ponder" until "ponderhit" turns it into a normal search. */
+        volatile boolean pondering;
+
+        Search(UciPosition position, boolean infinite, Consumer<AnalysisInfo> infoListener) {
+            this.position = position;
+            this.infinite = infinite;
+            this.infoListener = infoListener;
+        }
+    }
 
     /**
      * Returns the OS-appropriate Stockfish binary name.
@@ -83,7 +261,7 @@ public class StockfishEngine {
      *   4. ../res/stockfish17/<binary>
      *   5. "stockfish" on the system PATH
      */
-    private static String resolveStockfishPath() {
+    static String resolveStockfishPath() {
         String binaryName = getStockfishBinaryName();
         String osSubdir = getOsSubdir();
         Path workingDir = Paths.get(System.getProperty("user.dir"));
@@ -106,42 +284,118 @@ public class StockfishEngine {
     }
 
     public StockfishEngine() {
-        this.stockfishPath = resolveStockfishPath();
-        this.config = new EngineConfig();
-        this.executor = Executors.newSingleThreadExecutor();
-        this.moveGenerator = new MoveGenerator();
-        this.running = false;
-        this.analyzing = false;
+        this(resolveStockfishPath());
     }
 
     public StockfishEngine(String stockfishPath) {
         this.stockfishPath = stockfishPath;
         this.config = new EngineConfig();
-        this.executor = Executors.newSingleThreadExecutor();
         this.moveGenerator = new MoveGenerator();
         this.running = false;
-        this.analyzing = false;
     }
 
-    public void setConfig(EngineConfig config) {
+    /**
+     * Replaces the config. On a running engine only the options whose values changed are
+     * sent: a new Hash or Threads value makes the engine reallocate and clear its hash
+     * table.
+     *
+     * @throws IllegalArgumentException if the running engine does not support one of the
+     *                                  options or value; the old config is kept then
+     */
+    public synchronized void setConfig(EngineConfig config) {
+        validateConfig(config);
         this.config = config;
         if (running) {
             applyOptions();
         }
     }
 
+    /**
+     * Checks a config against the options the running engine advertised, without applying
+     * it. Does nothing while the engine is not running; start() checks then.
+     *
+     * @throws IllegalArgumentException describing every unsupported option or value
+     */
+    public void validateConfig(EngineConfig config) {
+        if (running) {
+            String problems = checkOptions(config);
+            if (problems != null) {
+                throw new IllegalArgumentException(problems);
+            }
+        }
+    }
+
     public EngineConfig getConfig() {
         return config;
     }
 
+    /**
+     * Sets the consumer for analysis updates. It runs on the reader thread and the
+     * AnalysisInfo passed in is reused for the next line, so it must copy what it needs
+     * and return quickly.
+     */
     public void setAnalysisCallback(Consumer<AnalysisInfo> callback) {
         this.analysisCallback = callback;
     }
 
+    /**
+     * Sets the consumer for completed analysis depths: one immutable snapshot holding
+     * every MultiPV line, published when the last line of a depth arrives. Runs on the
+     * reader thread.
+     */
+    public void setSnapshotCallback(Consumer<AnalysisSnapshot> callback) {
+        this.snapshotCallback = callback;
+    }
+
+    /**
+     * Returns the last completed depth of the current or most recent analysis, or null.
+     */
+    public AnalysisSnapshot getLatestSnapshot() {
+        MultiPvCollector collector = analysisCollector;
+        return collector != null ? collector.getLatest() : null;
+    }
+
+    /**
+     * Sets the cache consulted before searching and filled with search results, or null.
+     */
+    public void setEvalCache(EvalCache cache) {
+        this.evalCache = cache;
+    }
+
+    public EvalCache getEvalCache() {
+        return evalCache;
+    }
+
+    /**
+     * Sets the consumer called when an analysis search ends on its own (not via stop).
+     */
     public void setBestMoveCallback(Consumer<String> callback) {
         this.bestMoveCallback = callback;
     }
 
+    /**
+     * Adds a listener for every parsed line of engine output. Listeners run on the
+     * reader thread; an InfoEvent's AnalysisInfo must not be kept past the call.
+     */
+    public void addEventListener(Consumer<UciEvent> listener) {
+        eventListeners.add(listener);
+    }
+
+    public void removeEventListener(Consumer<UciEvent> listener) {
+        eventListeners.remove(listener);
+    }
+
+    /**
+     * Returns the options announced by the engine during the "uci" handshake.
+     */
+    public List<UciEvent.OptionEvent> getOptions() {
+        return Collections.unmodifiableList(options);
+    }
+
+    public State getState() {
+        return state;
+    }
+
     /**
      * Starts the Stockfish engine process.
      */
@@ -173,32 +427,46 @@ public class StockfishEngine {
         pb.directory(usingSystemPath ? null : sfFile.getParentFile());
         process = pb.start();
 
-        // Check if process started
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
         if (!process.isAlive()) {
             throw new IOException("Stockfish process terminated immediately");
         }
 
-        reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        reader = new UciLineReader(process.getInputStream());
         writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        options.clear();
+        pendingUciOk = new CompletableFuture<>();
 
-        running = true;
+        UciLineReader input = reader;
+        readerThread = new Thread(() -> readLoop(input), "stockfish-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
 
-        // Initialize UCI
-        sendCommand("uci");
-        waitFor("uciok");
+        running = true;
 
-        // Apply configuration
-        applyOptions();
+        try {
+            // Initialize UCI; a dead or non-UCI binary fails here instead of hanging
+            sendCommand("uci");
+            await(pendingUciOk, REPLY_TIMEOUT_MS);
+
+            // A fresh process has every option at its default
+            appliedOptions.clear();
+            for (UciEvent.OptionEvent option : options) {
+                if (option.name() != null && option.defaultValue() != null) {
+                    appliedOptions.put(option.name().toLowerCase(Locale.ROOT), option.defaultValue());
+                }
+            }
+            String problems = checkOptions(config);
+            if (problems != null) {
+                throw new IOException(problems);
+            }
 
-        // Signal ready
-        sendCommand("isready");
-        waitFor("readyok");
+            // Apply configuration and make sure the engine is ready even if nothing was sent
+            applyOptions();
+            waitReady();
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
     }
 
     /**
@@ -209,7 +477,8 @@ public class StockfishEngine {
             return;
         }
 
-        analyzing = false;
+        running = false;
+        current = null;
 
         try {
             sendCommand("quit");
@@ -219,7 +488,6 @@ public class StockfishEngine {
         }
 
         process.destroyForcibly();
-        running = false;
 
         try {
             reader.close();
@@ -227,330 +495,815 @@ public class StockfishEngine {
         } catch (IOException e) {
             // Ignore
         }
+
+        try {
+            readerThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IOException("Engine stopped"));
     }
 
     /**
      * Checks if the engine is running.
      */
     public boolean isRunning() {
-        return running;
+        return running && process.isAlive();
+    }
+
+    /**
+     * Checks that the process is alive and answers "isready" in time. Safe to call
+     * while a search is running.
+     */
+    public boolean ping() {
+        if (!isRunning()) {
+            return false;
+        }
+        try {
+            waitReady();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void ensureRunning() throws IOException {
+        if (!isRunning()) {
+            throw new IOException("Engine not running");
+        }
     }
 
     /**
      * Sends a command to the engine.
      */
     private void sendCommand(String command) throws IOException {
-        writer.write(command + "\n");
-        writer.flush();
+        synchronized (writer) {
+            writer.write(command);
+            writer.write('\n');
+            writer.flush();
+        }
     }
 
     /**
-     * Waits for a specific response from the engine.
+     * Reads engine output until the stream closes, dispatching one event per line. A line
+     * that fails to parse or a listener that throws is logged and skipped; only the end
+     * of the stream ends the loop.
      */
-    private String waitFor(String keyword) throws IOException {
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.contains(keyword)) {
-                return line;
+    private void readLoop(UciLineReader input) {
+        try {
+            while (input.readLine() != null) {
+                try {
+                    dispatch(parseEvent(input));
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed by stop() or by the process exiting
+        } finally {
+            running = false;
+            failPending(new IOException("Engine process exited"));
+        }
+    }
+
+    private UciEvent parseEvent(UciLineReader line) {
+        if (line.startsWith("info")) {
+            UciInfoParser.parse(line, analysisInfo);
+            return infoEvent;
+        } else if (line.startsWith("bestmove")) {
+            return UciEvent.BestMoveEvent.parse(line.toString());
+        } else if (line.startsWith("readyok")) {
+            return READY_OK;
+        } else if (line.startsWith("uciok")) {
+            return UCI_OK;
+        } else if (line.startsWith("option ")) {
+            return UciEvent.OptionEvent.parse(line.toString());
+        } else if (line.startsWith("Nodes searched")) {
+            String text = line.toString();
+            try {
+                return new UciEvent.PerftEvent(Long.parseLong(text.substring(text.indexOf(':') + 1).trim()));
+            } catch (NumberFormatException e) {
+                // Still ends the "go perft"; perft() reports it
+                return new UciEvent.PerftEvent(-1);
+            }
+        }
+        return new UciEvent.TextEvent(line.toString());
+    }
+
+    /**
+     * Completes whichever request the event answers, then notifies listeners.
+     */
+    private void dispatch(UciEvent event) {
+        if (event == infoEvent) {
+            Search search = searches.peekFirst();
+            if (search != null && search.infoListener != null && analysisInfo.hasScore) {
+                search.infoListener.accept(analysisInfo);
+            }
+        } else if (event instanceof UciEvent.BestMoveEvent || event instanceof UciEvent.PerftEvent) {
+            Search search;
+            synchronized (searches) {
+                search = searches.pollFirst();
+                if (searches.isEmpty()) {
+                    state = State.IDLE;
+                }
+            }
+            if (search != null) {
+                search.result.complete(event);
+            }
+        } else if (event == READY_OK) {
+            CompletableFuture<Void> ready = pendingReady.poll();
+            if (ready != null) {
+                ready.complete(null);
+            }
+        } else if (event == UCI_OK) {
+            pendingUciOk.complete(null);
+        } else if (event instanceof UciEvent.OptionEvent option) {
+            options.add(option);
+        }
+
+        for (Consumer<UciEvent> listener : eventListeners) {
+            listener.accept(event);
+        }
+    }
+
+    private void failPending(IOException cause) {
+        pendingUciOk.completeExceptionally(cause);
+        CompletableFuture<Void> ready;
+        while ((ready = pendingReady.poll()) != null) {
+            ready.completeExceptionally(cause);
+        }
+        synchronized (searches) {
+            Search search;
+            while ((search = searches.pollFirst()) != null) {
+                search.result.completeExceptionally(cause);
+            }
+            state = State.IDLE;
+        }
+    }
+
+    /**
+     * Waits for a reply, converting failures to IOException. A timeout of 0 waits indefinitely.
+     */
+    private static <T> T await(CompletableFuture<T> future, long timeoutMs) throws IOException {
+        try {
+            return timeoutMs > 0 ? future.get(timeoutMs, TimeUnit.MILLISECONDS) : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the engine", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Engine did not reply within " + timeoutMs + " ms", e);
+        }
+    }
+
+    /**
+     * Sends "isready" and waits for the matching "readyok".
+     */
+    private void waitReady() throws IOException {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        pendingReady.add(ready);
+        sendCommand("isready");
+        await(ready, REPLY_TIMEOUT_MS);
+    }
+
+    /**
+     * Starts a search on the given position, first bringing the engine back to IDLE.
+     * "position" and "go" go out in one write with no "isready" in between; the engine
+     * processes commands in order, so the search always sees the new position.
+     */
+    private Search startSearch(UciPosition position, String goCommand, boolean infinite,
+                               Consumer<AnalysisInfo> infoListener) throws IOException {
+        awaitIdle();
+        Search search = new Search(position, infinite, infoListener);
+        synchronized (searches) {
+            searches.addLast(search);
+            state = State.SEARCHING;
+        }
+        current = search;
+        sendCommand(position.appendCommand(new StringBuilder(256)).append('\n').append(goCommand).toString());
+        return search;
+    }
+
+    /**
+     * Tells the engine that following searches belong to a new game, clearing its hash
+     * and history. Positions within one game should share a root and extend its move list.
+     */
+    public synchronized void newGame() throws IOException {
+        ensureRunning();
+        awaitIdle();
+        sendCommand("ucinewgame");
+        waitReady();
+    }
+
+    /**
+     * Waits until no search is running. An infinite or ponder search is stopped; a finite
+     * one is allowed to finish so its caller still gets a result. Either way the only
+     * thing waited for is that search's own bestmove.
+     */
+    private void awaitIdle() throws IOException {
+        Search search = current;
+        if (search == null) {
+            return;
+        }
+        boolean stoppable = search.infinite || search.pondering;
+        if (stoppable) {
+            requestStop(search);
+        }
+        await(search.result, stoppable ? REPLY_TIMEOUT_MS : 0);
+        current = null;
+    }
+
+    /**
+     * Asks the engine to stop whatever it is searching, without waiting. The search still
+     * completes, with the best move found so far. Safe to call from any thread.
+     */
+    public void stopSearch() {
+        Search search = searches.peekLast();
+        if (search == null) {
+            return;
+        }
+        try {
+            requestStop(search);
+        } catch (IOException e) {
+            // Engine gone; its searches are failed when the reader sees EOF
+        }
+    }
+
+    private void requestStop(Search search) throws IOException {
+        if (search.stopRequested || search.result.isDone()) {
+            return;
+        }
+        search.stopRequested = true;
+        synchronized (searches) {
+            if (state == State.SEARCHING) {
+                state = State.STOPPING;
+            }
+        }
+        sendCommand("stop");
+    }
+
+    /**
+     * Checks a config against the options the engine advertised.
+     *
+     * @return a description of every unsupported option or value, or null if all are fine
+     */
+    private String checkOptions(EngineConfig config) {
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<String, String> entry : config.getUciOptionValues().entrySet()) {
+            String name = entry.getKey();
+            String value = entry.getValue();
+            UciEvent.OptionEvent option = findOption(name);
+            if (option == null) {
+                problems.add("Engine has no option \"" + name + "\"");
+                continue;
+            }
+            String type = option.type() != null ? option.type() : "";
+            switch (type) {
+                case "spin" -> {
+                    try {
+                        long number = Long.parseLong(value);
+                        if ((option.min() != null && number < Long.parseLong(option.min()))
+                                || (option.max() != null && number > Long.parseLong(option.max()))) {
+                            problems.add(name + " " + value + " is outside " + option.min() + ".." + option.max());
+                        }
+                    } catch (NumberFormatException e) {
+                        problems.add(name + " needs a number, not \"" + value + "\"");
+                    }
+                }
+                case "check" -> {
+                    if (!value.equals("true") && !value.equals("false")) {
+                        problems.add(name + " needs true or false, not \"" + value + "\"");
+                    }
+                }
+                case "combo" -> {
+                    if (option.vars().stream().noneMatch(var -> var.equalsIgnoreCase(value))) {
+                        problems.add(name + " must be one of " + option.vars() + ", not \"" + value + "\"");
+                    }
+                }
+                default -> {
+                    // string and button take anything
+                }
+            }
+        }
+        return problems.isEmpty() ? null : String.join("; ", problems);
+    }
+
+    /** Looks up an advertised option; UCI option names are case-insensitive. */
+    private UciEvent.OptionEvent findOption(String name) {
+        for (UciEvent.OptionEvent option : options) {
+            if (name.equalsIgnoreCase(option.name())) {
+                return option;
             }
         }
         return null;
     }
 
     /**
-     * Applies engine options from config.
+     * Sends the options whose config value differs from what the engine has. Does nothing,
+     * not even interrupt a running analysis, if nothing changed.
      */
-    private void applyOptions() {
+    private synchronized void applyOptions() {
+        Map<String, String> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : config.getUciOptionValues().entrySet()) {
+            String key = entry.getKey().toLowerCase(Locale.ROOT);
+            if (!entry.getValue().equals(appliedOptions.get(key))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
         try {
-            for (String option : config.getUciOptions()) {
-                sendCommand(option);
+            // Options may only be changed while idle; resume analysis afterwards
+            Search analysis = runningAnalysis();
+            awaitIdle();
+            for (Map.Entry<String, String> entry : changed.entrySet()) {
+                sendCommand("setoption name " + entry.getKey() + " value " + entry.getValue());
+                appliedOptions.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue());
+            }
+            waitReady();
+            if (analysis != null) {
+                beginAnalysis(analysis.position);
             }
-            sendCommand("isready");
-            waitFor("readyok");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private Search runningAnalysis() {
+        Search search = current;
+        return search != null && search.infinite && !search.result.isDone() ? search : null;
+    }
+
     /**
-     * Sets the position using FEN and makes the engine ready.
+     * Sets the position using FEN and waits until the engine is ready. Searches do not
+     * need this; they send the position together with "go".
      */
     public void setPosition(String fen) throws IOException {
-        sendCommand("position fen " + fen);
-        sendCommand("isready");
-        waitFor("readyok");
+        setPosition(UciPosition.fromFen(fen));
+    }
+
+    public synchronized void setPosition(UciPosition position) throws IOException {
+        awaitIdle();
+        sendCommand(position.toCommand());
+        waitReady();
     }
 
     /**
      * Sets position from starting position with moves.
      */
-    public void setPositionWithMoves(String moves) throws IOException {
+    public synchronized void setPositionWithMoves(String moves) throws IOException {
+        awaitIdle();
         if (moves == null || moves.isEmpty()) {
             sendCommand("position startpos");
         } else {
             sendCommand("position startpos moves " + moves);
         }
-        sendCommand("isready");
-        waitFor("readyok");
+        waitReady();
     }
 
     /**
      * Gets the best move for the current position synchronously.
      */
-    public synchronized String getBestMove(String fen) throws IOException {
-        if (!running || !process.isAlive()) {
-            throw new IOException("Engine not running");
-        }
+    public String getBestMove(String fen) throws IOException {
+        return getBestMove(UciPosition.fromFen(fen));
+    }
 
-        // Stop any running analysis first
-        if (analyzing) {
-            analyzing = false;
-            sendCommand("stop");
-            // Wait a moment for stop to process
-            try { Thread.sleep(50); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
-            // Clear any pending output
-            while (reader.ready()) { reader.readLine(); }
-        }
+    /**
+     * Gets the best move for a game position, sent with its move history.
+     */
+    public String getBestMove(UciPosition position) throws IOException {
+        return await(search(position, config.getGoCommand()), 0).bestMove();
+    }
 
-        sendCommand("isready");
-        waitFor("readyok");
+    /**
+     * Gets the best move asynchronously. The search is started before this returns.
+     */
+    public CompletableFuture<String> getBestMoveAsync(String fen) {
+        return getBestMoveAsync(UciPosition.fromFen(fen));
+    }
 
-        setPosition(fen);
-        sendCommand(config.getGoCommand());
+    public CompletableFuture<String> getBestMoveAsync(UciPosition position) {
+        return search(position, config.getGoCommand()).thenApply(UciEvent.BestMoveEvent::bestMove);
+    }
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("bestmove")) {
-                String[] parts = line.split("\\s+");
-                return parts.length > 1 ? parts[1] : null;
+    /**
+     * Starts a finite search with the given go command (e.g., "go depth 20") and returns
+     * its bestmove. Waits for any other finite search to finish first. If the engine is
+     * pondering on exactly this position, "ponderhit" is sent instead and the ponder
+     * search's result is returned; a ponder on any other position is stopped.
+     * <p>
+     * With an {@link EvalCache} and full playing strength (Skill Level 20), a cached result
+     * at least as deep as the command's "depth" is returned without searching, unless the
+     * game's history could change the move (see {@link #historyCannotMatter}). Otherwise
+     * a cached line is only passed to the snapshot callback while the engine searches.
+     */
+    public CompletableFuture<UciEvent.BestMoveEvent> search(UciPosition position, String goCommand) {
+        try {
+            Search search;
+            synchronized (this) {
+                ensureRunning();
+                search = current;
+                if (search != null && search.pondering && !search.result.isDone()
+                        && search.position.equals(position)) {
+                    search.pondering = false;
+                    sendCommand("ponderhit");
+                } else {
+                    EvalCache cache = evalCache;
+                    long key = cache != null ? positionKey(position) : 0;
+                    UciEvent.BestMoveEvent cached = cachedBestMove(cache, key, position, goCommand);
+                    if (cached != null) {
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    publishCached(cache, key);
+                    ResultRecorder recorder = cache != null ? new ResultRecorder(cache, key) : null;
+                    search = startSearch(position, goCommand, false, recorder);
+                    if (recorder != null) {
+                        recorder.storeWhenDone(search);
+                    }
+                }
             }
+            return search.result.thenApply(event -> (UciEvent.BestMoveEvent) event);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        return null;
     }
 
     /**
-     * Gets the best move asynchronously.
+     * Runs a finite search and returns its bestmove together with the final score and
+     * principal variation. Unlike {@link #search}, this never answers from the cache or
+     * from a ponder search, so the result always carries a fresh line.
      */
-    public CompletableFuture<String> getBestMoveAsync(String fen) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return getBestMove(fen);
-            } catch (IOException e) {
-                throw new CompletionException(e);
+    public CompletableFuture<SearchResult> analyse(UciPosition position, String goCommand) {
+        return analyse(position, goCommand, null);
+    }
+
+    /**
+     * Like {@link #analyse(UciPosition, String)}, also passing every info line to
+     * infoListener on the engine's reader thread. The info object is reused between
+     * calls, so copy whatever is needed later.
+     */
+    public CompletableFuture<SearchResult> analyse(UciPosition position, String goCommand,
+                                                   Consumer<AnalysisInfo> infoListener) {
+        return analyse(position, goCommand, infoListener, evalCache);
+    }
+
+    /**
+     * Like {@link #analyse(UciPosition, String)}, but the result is not stored in the
+     * evaluation cache. For searches whose results are not worth keeping, such as a warm-up.
+     */
+    public CompletableFuture<SearchResult> analyseUncached(UciPosition position, String goCommand) {
+        return analyse(position, goCommand, null, null);
+    }
+
+    private CompletableFuture<SearchResult> analyse(UciPosition position, String goCommand,
+                                                    Consumer<AnalysisInfo> infoListener, EvalCache cache) {
+        AnalysisInfo last = new AnalysisInfo();
+        ResultRecorder recorder = cache != null ? new ResultRecorder(cache, positionKey(position)) : null;
+        try {
+            Search search;
+            synchronized (this) {
+                ensureRunning();
+                search = startSearch(position, goCommand, false, info -> {
+                    if (info.multiPv == 1 && !info.lowerBound && !info.upperBound) {
+                        last.copyFrom(info);
+                    }
+                    if (recorder != null) {
+                        recorder.accept(info);
+                    }
+                    if (infoListener != null) {
+                        infoListener.accept(info);
+                    }
+                });
+                if (recorder != null) {
+                    recorder.storeWhenDone(search);
+                }
             }
-        }, executor);
+            return search.result.thenApply(event -> {
+                UciEvent.BestMoveEvent bestMove = (UciEvent.BestMoveEvent) event;
+                AnalysisSnapshot.Line line = last.hasScore ? new AnalysisSnapshot.Line(last) : null;
+                return new SearchResult(bestMove.bestMove(), bestMove.ponder(), line, last.nodes);
+            });
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     /**
-     * Starts analysis of the current position.
+     * Starts pondering: searches the position after the engine's move and the expected
+     * reply, on the opponent's time. If the opponent plays that reply, the next best-move
+     * request for the resulting position becomes a "ponderhit" and usually returns at once.
+     * Does nothing if pondering is disabled in the config or there is no expected reply.
      */
-    public synchronized void startAnalysis(String fen) {
-        if (!running || !process.isAlive()) {
+    public synchronized void ponder(UciPosition afterEngineMove, String ponderMove) {
+        if (!config.isPonder() || ponderMove == null || !isRunning()) {
             return;
         }
 
-        // Stop any previous analysis
-        if (analyzing) {
-            analyzing = false;
-            try {
-                sendCommand("stop");
-                Thread.sleep(50);
-                while (reader.ready()) { reader.readLine(); }
-            } catch (Exception e) { /* ignore */ }
+        // The expected reply is appended to the move list so a hit compares equal
+        UciPosition expected;
+        try {
+            Board board = FenParser.parse(afterEngineMove.getFen());
+            Move reply = Move.fromUci(ponderMove, board);
+            board.makeMove(reply);
+            expected = afterEngineMove.withMove(PackedMove.fromMove(reply), board.toFen());
+        } catch (IllegalArgumentException e) {
+            return;
         }
 
-        analyzing = true;
+        try {
+            String goCommand = config.getGoCommand();
+            Search search = startSearch(expected, "go ponder" + goCommand.substring("go".length()), false, null);
+            search.pondering = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        executor.submit(() -> {
-            try {
-                synchronized (this) {
-                    sendCommand("isready");
-                    waitFor("readyok");
-                    setPosition(fen);
-                    sendCommand("go infinite");
-                }
+    /**
+     * Stops pondering, if the engine is pondering, and waits for it to acknowledge.
+     */
+    public synchronized void stopPonder() {
+        Search search = current;
+        if (search == null || !search.pondering) {
+            return;
+        }
+        try {
+            awaitIdle();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
 
-                String line;
-                while (analyzing && (line = reader.readLine()) != null) {
-                    if (line.startsWith("info") && line.contains("score")) {
-                        AnalysisInfo info = parseInfoLine(line);
-                        if (info != null && analysisCallback != null) {
-                            analysisCallback.accept(info);
-                        }
-                    } else if (line.startsWith("bestmove")) {
-                        String[] parts = line.split("\\s+");
-                        String bestMove = parts.length > 1 ? parts[1] : null;
-                        if (bestMoveCallback != null) {
-                            bestMoveCallback.accept(bestMove);
-                        }
-                        break;
-                    }
-                }
-            } catch (IOException e) {
-                if (analyzing) {
-                    e.printStackTrace();
-                }
+    public synchronized boolean isPondering() {
+        Search search = current;
+        return search != null && search.pondering && !search.result.isDone();
+    }
+
+    /**
+     * Starts analysis of the current position, replacing any analysis already running.
+     */
+    public void startAnalysis(String fen) {
+        startAnalysis(UciPosition.fromFen(fen));
+    }
+
+    /**
+     * Starts analysis of a game position, sent with its move history.
+     */
+    public synchronized void startAnalysis(UciPosition position) {
+        if (!isRunning()) {
+            return;
+        }
+
+        try {
+            beginAnalysis(position);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void beginAnalysis(UciPosition position) throws IOException {
+        Board board = FenParser.parse(position.getFen());
+        long key = board.getZobristKey();
+        EvalCache cache = evalCache;
+
+        // The engine reports at most one line per legal move, whatever MultiPV says
+        int legalMoves = moveGenerator.generateLegalMoves(board, new int[MoveGenerator.MAX_MOVES]);
+        MultiPvCollector collector = new MultiPvCollector(Math.min(config.getMultiPV(), legalMoves), snapshot -> {
+            if (cache != null) {
+                cache.put(EvalCache.Entry.of(key, snapshot.getBestLine(), snapshot.getNodes()));
+            }
+            Consumer<AnalysisSnapshot> callback = snapshotCallback;
+            if (callback != null) {
+                callback.accept(snapshot);
+            }
+        });
+        analysisCollector = collector;
+        publishCached(cache, key);
+
+        Search search = startSearch(position, "go infinite", true, info -> {
+            collector.accept(info);
+            Consumer<AnalysisInfo> callback = analysisCallback;
+            if (callback != null) {
+                callback.accept(info);
+            }
+        });
+        search.result.thenAccept(event -> {
+            Consumer<String> callback = bestMoveCallback;
+            if (!search.stopRequested && callback != null) {
+                callback.accept(((UciEvent.BestMoveEvent) event).bestMove());
             }
         });
     }
 
     /**
-     * Stops the current analysis.
+     * Passes what the cache already knows about a position to the snapshot callback, to
+     * show while the search catches up.
      */
-    public synchronized void stopAnalysis() {
-        if (!analyzing) return;
+    private void publishCached(EvalCache cache, long key) {
+        EvalCache.Entry known = cache != null ? cache.get(key) : null;
+        Consumer<AnalysisSnapshot> callback = snapshotCallback;
+        if (known != null && known.getPvLength() > 0 && callback != null) {
+            AnalysisInfo seed = new AnalysisInfo();
+            known.copyTo(seed);
+            callback.accept(new AnalysisSnapshot(known.getDepth(), known.getNodes(), 0, 0, 0, 0,
+                    List.of(new AnalysisSnapshot.Line(seed))));
+        }
+    }
 
-        analyzing = false;
+    /**
+     * Stops the current analysis and waits for the engine to acknowledge it.
+     * A finite search (best move, perft) is left running.
+     */
+    public synchronized void stopAnalysis() {
+        Search search = current;
+        if (search == null || !search.infinite) {
+            return;
+        }
         try {
-            sendCommand("stop");
-            Thread.sleep(50);
-            // Clear any pending output
-            while (reader.ready()) { reader.readLine(); }
-        } catch (Exception e) {
+            awaitIdle();
+        } catch (IOException e) {
             // Ignore
         }
     }
 
     /**
-     * Gets legal moves for the current position using perft.
+     * Gets legal moves for a position. Generated in-process by {@link MoveGenerator},
+     * so this neither talks to the engine nor interrupts a running analysis.
      */
-    public synchronized Set<String> getLegalMoves(String fen) throws IOException {
-        if (!running || !process.isAlive()) {
-            return new HashSet<>();
-        }
+    public Set<String> getLegalMoves(String fen) {
+        return moveGenerator.getLegalMoves(FenParser.parse(fen));
+    }
 
-        // Stop any running analysis first
-        if (analyzing) {
-            analyzing = false;
-            sendCommand("stop");
-            try { Thread.sleep(50); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
-            while (reader.ready()) { reader.readLine(); }
+    /**
+     * Runs the engine's own "go perft" and returns the total node count,
+     * for cross-checking the in-process move generator.
+     */
+    public long perft(String fen, int depth) throws IOException {
+        Search search;
+        synchronized (this) {
+            ensureRunning();
+            search = startSearch(UciPosition.fromFen(fen), "go perft " + depth, false, null);
         }
+        long nodes = ((UciEvent.PerftEvent) await(search.result, 0)).nodes();
+        if (nodes < 0) {
+            throw new IOException("Engine sent an unreadable perft total");
+        }
+        return nodes;
+    }
 
-        sendCommand("isready");
-        waitFor("readyok");
-
-        setPosition(fen);
-        sendCommand("go perft 1");
+    /**
+     * Gets legal moves asynchronously.
+     */
+    public CompletableFuture<Set<String>> getLegalMovesAsync(String fen) {
+        return CompletableFuture.completedFuture(getLegalMoves(fen));
+    }
 
-        Set<String> moves = new HashSet<>();
-        String line;
+    /**
+     * Evaluates the current position and returns the score in centipawns.
+     */
+    public int evaluate(String fen) throws IOException {
+        UciPosition position = UciPosition.fromFen(fen);
+        EvalCache cache = evalCache;
+        long key = cache != null ? positionKey(position) : 0;
+        EvalCache.Entry cached = cache != null ? cache.get(key, EVALUATE_DEPTH) : null;
+        if (cached != null) {
+            return encodeScore(cached.isMate(), cached.getMateIn(), cached.getScore());
+        }
 
-        while ((line = reader.readLine()) != null) {
-            if (line.contains(":") && !line.startsWith("Nodes")) {
-                String move = line.split(":")[0].trim();
-                if (move.length() >= 4 && move.length() <= 5) {
-                    moves.add(move);
+        int[] score = new int[1];
+        ResultRecorder recorder = cache != null ? new ResultRecorder(cache, key) : null;
+        Search search;
+        synchronized (this) {
+            ensureRunning();
+            search = startSearch(position, "go depth " + EVALUATE_DEPTH, false, info -> {
+                score[0] = encodeScore(info.isMate, info.mateIn, info.score);
+                if (recorder != null) {
+                    recorder.accept(info);
                 }
-            }
-            if (line.startsWith("Nodes searched")) {
-                break;
+            });
+            if (recorder != null) {
+                recorder.storeWhenDone(search);
             }
         }
+        await(search.result, 0);
+        return score[0];
+    }
+
+    private static int encodeScore(boolean mate, int mateIn, int score) {
+        return mate ? (mateIn > 0 ? 100000 - mateIn : -100000 - mateIn) : score;
+    }
 
-        return moves;
+    private static long positionKey(UciPosition position) {
+        return FenParser.parse(position.getFen()).getZobristKey();
     }
 
     /**
-     * Gets legal moves asynchronously.
+     * A cached bestmove for a search, if the cache may stand in for the engine: only at
+     * full strength (a weakened engine would not play the cached best move), only when
+     * the command names a depth the cached result reaches, and only when the position's
+     * history cannot matter.
      */
-    public CompletableFuture<Set<String>> getLegalMovesAsync(String fen) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return getLegalMoves(fen);
-            } catch (IOException e) {
-                throw new CompletionException(e);
-            }
-        }, executor);
+    private UciEvent.BestMoveEvent cachedBestMove(EvalCache cache, long key, UciPosition position,
+                                                  String goCommand) {
+        if (cache == null || config.getSkillLevel() < 20) {
+            return null;
+        }
+        int depth = requestedDepth(goCommand);
+        EvalCache.Entry entry = depth > 0 ? cache.get(key, depth) : null;
+        if (entry == null || entry.getBestMove() == PackedMove.NONE || !historyCannotMatter(position, depth)) {
+            return null;
+        }
+        int ponder = entry.getPonderMove();
+        return new UciEvent.BestMoveEvent(PackedMove.toUci(entry.getBestMove()),
+                ponder != PackedMove.NONE ? PackedMove.toUci(ponder) : null);
     }
 
     /**
-     * Parses a UCI info line into an AnalysisInfo object.
+     * True if the moves that led to a position cannot change the engine's choice there.
+     * Cache entries are keyed on the position alone, while the engine also sees the move
+     * list and the halfmove clock and steers towards or away from threefold repetitions
+     * and fifty-move draws accordingly. The history cannot matter right after a capture or
+     * pawn move, or when no position since the last one has occurred twice and a search
+     * of the given depth cannot reach the fifty-move limit.
      */
-    private AnalysisInfo parseInfoLine(String line) {
-        AnalysisInfo info = new AnalysisInfo();
+    static boolean historyCannotMatter(UciPosition position, int depth) {
+        Board board = FenParser.parse(position.getRootFen());
+        int moveCount = position.getMoveCount();
+        long[] keys = new long[moveCount + 1];
+        keys[0] = board.getZobristKey();
+        for (int i = 0; i < moveCount; i++) {
+            board.makeMove(position.getMove(i));
+            keys[i + 1] = board.getZobristKey();
+        }
 
-        String[] parts = line.split("\\s+");
-        for (int i = 0; i < parts.length; i++) {
-            switch (parts[i]) {
-                case "depth":
-                    if (i + 1 < parts.length) {
-                        info.depth = Integer.parseInt(parts[i + 1]);
-                    }
-                    break;
-                case "seldepth":
-                    if (i + 1 < parts.length) {
-                        info.selectiveDepth = Integer.parseInt(parts[i + 1]);
-                    }
-                    break;
-                case "nodes":
-                    if (i + 1 < parts.length) {
-                        info.nodes = Long.parseLong(parts[i + 1]);
-                    }
-                    break;
-                case "nps":
-                    if (i + 1 < parts.length) {
-                        info.nps = Integer.parseInt(parts[i + 1]);
-                    }
-                    break;
-                case "score":
-                    if (i + 1 < parts.length) {
-                        if (parts[i + 1].equals("cp") && i + 2 < parts.length) {
-                            info.score = Integer.parseInt(parts[i + 2]);
-                            info.isMate = false;
-                        } else if (parts[i + 1].equals("mate") && i + 2 < parts.length) {
-                            info.mateIn = Integer.parseInt(parts[i + 2]);
-                            info.isMate = true;
-                        }
-                    }
-                    break;
-                case "pv":
-                    // Collect all remaining as principal variation
-                    int pvStart = i + 1;
-                    int pvEnd = parts.length;
-                    info.principalVariation = new String[pvEnd - pvStart];
-                    System.arraycopy(parts, pvStart, info.principalVariation, 0, pvEnd - pvStart);
-                    if (info.principalVariation.length > 0) {
-                        info.bestMove = info.principalVariation[0];
-                    }
-                    i = pvEnd; // Skip to end
-                    break;
+        int clock = board.getHalfmoveClock();
+        if (clock == 0) {
+            return true;
+        }
+        if (clock + depth >= 100) {
+            return false;
+        }
+        // Only positions since the last capture or pawn move, with the same side to move, repeat
+        int oldest = Math.max(0, moveCount - clock);
+        for (int i = moveCount; i >= oldest + 2; i--) {
+            for (int j = i - 2; j >= oldest; j -= 2) {
+                if (keys[j] == keys[i]) {
+                    return false;
+                }
             }
         }
-
-        return info;
+        return true;
     }
 
     /**
-     * Evaluates the current position and returns the score in centipawns.
+     * The N of "depth N" in a go command, or 0 if it has none.
      */
-    public int evaluate(String fen) throws IOException {
-        setPosition(fen);
-        sendCommand("go depth 10");
-
-        int score = 0;
-        String line;
-
-        while ((line = reader.readLine()) != null) {
-            if (line.contains("score cp")) {
-                String[] parts = line.split("score cp ");
-                if (parts.length > 1) {
-                    String scoreStr = parts[1].split("\\s+")[0];
-                    score = Integer.parseInt(scoreStr);
-                }
-            } else if (line.contains("score mate")) {
-                String[] parts = line.split("score mate ");
-                if (parts.length > 1) {
-                    String mateStr = parts[1].split("\\s+")[0];
-                    int mateIn = Integer.parseInt(mateStr);
-                    score = mateIn > 0 ? 100000 - mateIn : -100000 - mateIn;
+    static int requestedDepth(String goCommand) {
+        String[] parts = goCommand.trim().split("\\s+");
+        for (int i = 0; i + 1 < parts.length; i++) {
+            if (parts[i].equals("depth")) {
+                try {
+                    return Integer.parseInt(parts[i + 1]);
+                } catch (NumberFormatException e) {
+                    return 0;
                 }
-            } else if (line.startsWith("bestmove")) {
-                break;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Keeps the last exact principal line of a search and stores it in the cache when the
+     * search ends. A search that was told to stop is not stored, since its last depth may
+     * be incomplete.
+     */
+    private static final class ResultRecorder implements Consumer<AnalysisInfo> {
+        private final EvalCache cache;
+        private final long key;
+        private final AnalysisInfo last = new AnalysisInfo();
+
+        ResultRecorder(EvalCache cache, long key) {
+            this.cache = cache;
+            this.key = key;
+        }
+
+        @Override
+        public void accept(AnalysisInfo info) {
+            if (info.multiPv == 1 && !info.lowerBound && !info.upperBound && info.pvLength > 0) {
+                last.copyFrom(info);
             }
         }
 
-        return score;
+        void storeWhenDone(Search search) {
+            search.result.thenRun(() -> {
+                if (!search.stopRequested && last.depth > 0) {
+                    cache.put(EvalCache.Entry.of(key, last));
+                }
+            });
+        }
     }
 
     /**
@@ -561,15 +1314,9 @@ public class StockfishEngine {
     }
 
     /**
-     * Shuts down the executor service.
+     * Stops the engine and its reader thread.
      */
     public void shutdown() {
         stop();
-        executor.shutdown();
-        try {
-            executor.awaitTermination(2, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
-        }
     }
 }
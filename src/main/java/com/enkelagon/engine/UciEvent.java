@@ -0,0 +1,112 @@
+package com.enkelagon.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A line of engine output, parsed by the engine's reader thread.
+ */
+public sealed interface UciEvent {
+
+    /**
+     * Search information. The AnalysisInfo is reused for the next info line, so it is
+     * only valid while the event is being dispatched.
+     */
+    record InfoEvent(StockfishEngine.AnalysisInfo info) implements UciEvent {
+    }
+
+    /**
+     * End of a search. The ponder move is null if the engine did not suggest one.
+     */
+    record BestMoveEvent(String bestMove, String ponder) implements UciEvent {
+
+        /**
+         * Parses "bestmove e2e4 [ponder e7e5]"; "(none)" is reported as a null move.
+         */
+        static BestMoveEvent parse(String line) {
+            String[] parts = line.trim().split("\\s+");
+            String best = parts.length > 1 && !parts[1].equals("(none)") ? parts[1] : null;
+            String ponder = parts.length > 3 && parts[2].equals("ponder") ? parts[3] : null;
+            return new BestMoveEvent(best, ponder);
+        }
+    }
+
+    /**
+     * Reply to "isready".
+     */
+    record ReadyOkEvent() implements UciEvent {
+    }
+
+    /**
+     * End of the "uci" handshake.
+     */
+    record UciOkEvent() implements UciEvent {
+    }
+
+    /**
+     * An option the engine supports, as announced during the "uci" handshake.
+     * Absent fields are null; vars lists the choices of a combo option.
+     */
+    record OptionEvent(String name, String type, String defaultValue, String min, String max,
+                       List<String> vars) implements UciEvent {
+
+        /**
+         * Parses "option name Skill Level type spin default 20 min 0 max 20". Names and
+         * values may contain spaces, so each field runs until the next keyword.
+         */
+        static OptionEvent parse(String line) {
+            String[] parts = line.trim().split("\\s+");
+            String name = null;
+            String type = null;
+            String defaultValue = null;
+            String min = null;
+            String max = null;
+            List<String> vars = new ArrayList<>();
+
+            int i = 1;
+            while (i < parts.length) {
+                String keyword = parts[i++];
+                StringBuilder value = new StringBuilder();
+                while (i < parts.length && !isOptionKeyword(parts[i])) {
+                    if (value.length() > 0) {
+                        value.append(' ');
+                    }
+                    value.append(parts[i++]);
+                }
+                String text = value.toString();
+                switch (keyword) {
+                    case "name" -> name = text;
+                    case "type" -> type = text;
+                    case "default" -> defaultValue = text.equals("<empty>") ? "" : text;
+                    case "min" -> min = text;
+                    case "max" -> max = text;
+                    case "var" -> vars.add(text);
+                    default -> {
+                        // Unknown field, ignore
+                    }
+                }
+            }
+            return new OptionEvent(name, type, defaultValue, min, max, Collections.unmodifiableList(vars));
+        }
+
+        private static boolean isOptionKeyword(String token) {
+            return switch (token) {
+                case "name", "type", "default", "min", "max", "var" -> true;
+                default -> false;
+            };
+        }
+    }
+
+    /**
+     * Total from "go perft" ("Nodes searched: N"), or -1 if N could not be read.
+     */
+    record PerftEvent(long nodes) implements UciEvent {
+    }
+
+    /**
+     * Any other line (id, info string, error messages).
+     */
+    record TextEvent(String line) implements UciEvent {
+    }
+}
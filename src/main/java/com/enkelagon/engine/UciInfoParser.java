@@ -0,0 +1,212 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.model.PackedMove;
+
+/**
+ * Single-pass parser for UCI "info" lines. Tokens are read straight from the
+ * CharSequence into a caller-supplied AnalysisInfo, so parsing allocates nothing.
+ */
+public final class UciInfoParser {
+
+    private UciInfoParser() {
+        // Utility class
+    }
+
+    /**
+     * Parses an info line into the given AnalysisInfo, resetting it first. Returns false,
+     * leaving the AnalysisInfo untouched, if the line is not an info line.
+     */
+    public static boolean parse(CharSequence line, StockfishEngine.AnalysisInfo info) {
+        int length = line.length();
+        int pos = skipSpaces(line, 0, length);
+        int end = tokenEnd(line, pos, length);
+        if (!tokenEquals(line, pos, end, "info")) {
+            return false;
+        }
+        info.reset();
+
+        pos = skipSpaces(line, end, length);
+        while (pos < length) {
+            int keyStart = pos;
+            int keyEnd = tokenEnd(line, pos, length);
+            pos = skipSpaces(line, keyEnd, length);
+            int valueEnd = tokenEnd(line, pos, length);
+
+            switch (line.charAt(keyStart)) {
+                case 'd' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "depth")) {
+                        info.depth = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    }
+                }
+                case 's' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "seldepth")) {
+                        info.selectiveDepth = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    } else if (tokenEquals(line, keyStart, keyEnd, "score")) {
+                        pos = parseScore(line, pos, length, info);
+                    } else if (tokenEquals(line, keyStart, keyEnd, "string")) {
+                        // Free text runs to the end of the line
+                        return true;
+                    }
+                }
+                case 'm' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "multipv")) {
+                        info.multiPv = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    }
+                }
+                case 'n' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "nodes")) {
+                        info.nodes = parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    } else if (tokenEquals(line, keyStart, keyEnd, "nps")) {
+                        info.nps = parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    }
+                }
+                case 'w' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "wdl")) {
+                        info.wdlWin = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                        valueEnd = tokenEnd(line, pos, length);
+                        info.wdlDraw = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                        valueEnd = tokenEnd(line, pos, length);
+                        info.wdlLoss = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                        info.hasWdl = true;
+                    }
+                }
+                case 'h' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "hashfull")) {
+                        info.hashfull = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    }
+                }
+                case 't' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "tbhits")) {
+                        info.tbHits = parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    } else if (tokenEquals(line, keyStart, keyEnd, "time")) {
+                        info.timeMs = parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    }
+                }
+                case 'c' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "currmove")) {
+                        info.currMove = PackedMove.parseUci(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    } else if (tokenEquals(line, keyStart, keyEnd, "currmovenumber")) {
+                        info.currMoveNumber = (int) parseLong(line, pos, valueEnd);
+                        pos = skipSpaces(line, valueEnd, length);
+                    }
+                }
+                case 'p' -> {
+                    if (tokenEquals(line, keyStart, keyEnd, "pv")) {
+                        pos = parsePv(line, pos, length, info);
+                    }
+                }
+                default -> {
+                    // Unknown keyword: skip just the keyword and resynchronise on the next token
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses "cp x" or "mate y", optionally followed by "lowerbound"/"upperbound".
+     */
+    private static int parseScore(CharSequence line, int pos, int length, StockfishEngine.AnalysisInfo info) {
+        int typeEnd = tokenEnd(line, pos, length);
+        int valueStart = skipSpaces(line, typeEnd, length);
+        int valueEnd = tokenEnd(line, valueStart, length);
+        if (tokenEquals(line, pos, typeEnd, "cp")) {
+            info.score = (int) parseLong(line, valueStart, valueEnd);
+            info.isMate = false;
+            info.hasScore = true;
+        } else if (tokenEquals(line, pos, typeEnd, "mate")) {
+            info.mateIn = (int) parseLong(line, valueStart, valueEnd);
+            info.isMate = true;
+            info.hasScore = true;
+        } else {
+            return pos;
+        }
+
+        pos = skipSpaces(line, valueEnd, length);
+        int boundEnd = tokenEnd(line, pos, length);
+        if (tokenEquals(line, pos, boundEnd, "lowerbound")) {
+            info.lowerBound = true;
+            pos = skipSpaces(line, boundEnd, length);
+        } else if (tokenEquals(line, pos, boundEnd, "upperbound")) {
+            info.upperBound = true;
+            pos = skipSpaces(line, boundEnd, length);
+        }
+        return pos;
+    }
+
+    /**
+     * Reads packed moves until a token that is not a move (normally the end of the line).
+     */
+    private static int parsePv(CharSequence line, int pos, int length, StockfishEngine.AnalysisInfo info) {
+        int[] pv = info.pv;
+        while (pos < length) {
+            int end = tokenEnd(line, pos, length);
+            int move = PackedMove.parseUci(line, pos, end);
+            if (move == PackedMove.NONE) {
+                break;
+            }
+            if (info.pvLength < pv.length) {
+                pv[info.pvLength++] = move;
+            }
+            pos = skipSpaces(line, end, length);
+        }
+        return pos;
+    }
+
+    private static int skipSpaces(CharSequence line, int pos, int length) {
+        while (pos < length && line.charAt(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int tokenEnd(CharSequence line, int pos, int length) {
+        while (pos < length && line.charAt(pos) > ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean tokenEquals(CharSequence line, int start, int end, String keyword) {
+        if (end - start != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (line.charAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a signed decimal number; stops at the first non-digit and returns 0 for an empty token.
+     */
+    private static long parseLong(CharSequence line, int start, int end) {
+        boolean negative = start < end && line.charAt(start) == '-';
+        if (negative || (start < end && line.charAt(start) == '+')) {
+            start++;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,100 @@
+package com.enkelagon.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads engine output line by line into a reusable buffer. UCI output is ASCII, so
+ * bytes map straight to chars and a line can be parsed without creating a String.
+ * The line returned by {@link #readLine()} is this object and is only valid until
+ * the next call.
+ */
+final class UciLineReader implements CharSequence {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    private char[] line = new char[256];
+    private int length;
+
+    UciLineReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next line (without the line terminator), or returns null at end of stream.
+     */
+    CharSequence readLine() throws IOException {
+        length = 0;
+        boolean readAny = false;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return readAny ? this : null;
+                }
+            }
+            readAny = true;
+            byte b = buffer[position++];
+            if (b == '\n') {
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                return this;
+            }
+            if (length == line.length) {
+                char[] grown = new char[line.length * 2];
+                System.arraycopy(line, 0, grown, 0, length);
+                line = grown;
+            }
+            line[length++] = (char) (b & 0xFF);
+        }
+    }
+
+    /**
+     * Returns true if the current line starts with the given prefix.
+     */
+    boolean startsWith(String prefix) {
+        int n = prefix.length();
+        if (n > length) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void close() throws IOException {
+        in.close();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return line[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(line, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(line, 0, length);
+    }
+}
@@ -0,0 +1,115 @@
+package com.enkelagon.engine;
+
+import com.enkelagon.model.Board;
+import com.enkelagon.model.Game;
+import com.enkelagon.model.Move;
+import com.enkelagon.model.PackedMove;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A position as sent to the engine: a fixed root plus the moves played from it.
+ * Sending the move list rather than the resulting FEN gives the engine the game's
+ * history, so its search can see repetitions.
+ */
+public final class UciPosition {
+
+    private final String rootFen;
+    private final int[] moves;
+    private final String fen;
+
+    private UciPosition(String rootFen, int[] moves, String fen) {
+        this.rootFen = rootFen;
+        this.moves = moves;
+        this.fen = fen;
+    }
+
+    /**
+     * A position with no move history.
+     */
+    public static UciPosition fromFen(String fen) {
+        return new UciPosition(fen, new int[0], fen);
+    }
+
+    /**
+     * The game's current position, expressed as its start position plus every move played.
+     */
+    public static UciPosition of(Game game) {
+        List<Move> history = game.getMoveHistory();
+        int[] moves = new int[history.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = PackedMove.fromMove(history.get(i));
+        }
+        return new UciPosition(game.getStartFen(), moves, game.getCurrentFen());
+    }
+
+    /**
+     * The position after one more move.
+     */
+    public UciPosition withMove(int move, String resultingFen) {
+        int[] extended = Arrays.copyOf(moves, moves.length + 1);
+        extended[moves.length] = move;
+        return new UciPosition(rootFen, extended, resultingFen);
+    }
+
+    public String getRootFen() {
+        return rootFen;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Returns the FEN of the position reached after all moves.
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * Appends the "position ..." command, using "startpos" for the standard root.
+     */
+    public StringBuilder appendCommand(StringBuilder sb) {
+        sb.append("position ");
+        if (Board.STARTING_FEN.equals(rootFen)) {
+            sb.append("startpos");
+        } else {
+            sb.append("fen ").append(rootFen);
+        }
+        if (moves.length > 0) {
+            sb.append(" moves");
+            for (int move : moves) {
+                PackedMove.appendUci(sb.append(' '), move);
+            }
+        }
+        return sb;
+    }
+
+    public String toCommand() {
+        return appendCommand(new StringBuilder(32 + moves.length * 6)).toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof UciPosition)) return false;
+        UciPosition other = (UciPosition) obj;
+        return rootFen.equals(other.rootFen) && Arrays.equals(moves, other.moves);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * rootFen.hashCode() + Arrays.hashCode(moves);
+    }
+
+    @Override
+    public String toString() {
+        return toCommand();
+    }
+}
@@ -0,0 +1,162 @@
+package com.enkelagon.logic;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses EPD lines: the first four FEN fields followed by operations such as
+ * {@code bm Nf3; id "WAC.001";}. Plain FEN lines (six fields, no operations) are
+ * accepted too, so one reader handles both kinds of position file.
+ */
+public final class EpdParser {
+
+    /**
+     * One parsed line: a complete six-field FEN and the operations, in file order.
+     */
+    public record Record(String fen, Map<String, String> operations) {
+
+        /** The operand of an opcode with quotes removed, or null if absent. */
+        public String get(String opcode) {
+            return operations.get(opcode);
+        }
+
+        /** The "id" operation, or null. */
+        public String getId() {
+            return operations.get("id");
+        }
+
+        /**
+         * The operands of a move-list opcode such as "bm" or "am", in SAN as written.
+         */
+        public List<String> getMoves(String opcode) {
+            String operand = operations.get(opcode);
+            if (operand == null || operand.isBlank()) {
+                return Collections.emptyList();
+            }
+            return Arrays.asList(operand.trim().split("\\s+"));
+        }
+    }
+
+    private EpdParser() {
+        // Utility class
+    }
+
+    /**
+     * Parses one line of an EPD or FEN file.
+     *
+     * @return the record, or null for a blank line or a comment starting with '#'
+     * @throws IllegalArgumentException if the position part is not a valid FEN
+     */
+    public static Record parseLine(String line) {
+        String text = line.trim();
+        if (text.isEmpty() || text.startsWith("#")) {
+            return null;
+        }
+
+        // Board, side, castling and en passant
+        String[] fields = new String[4];
+        int pos = 0;
+        for (int i = 0; i < 4; i++) {
+            pos = skipSpaces(text, pos);
+            int end = nextSpace(text, pos);
+            if (pos == end) {
+                throw new IllegalArgumentException("Incomplete position: " + line);
+            }
+            fields[i] = text.substring(pos, end);
+            pos = end;
+        }
+
+        // A FEN carries the two move counters where an EPD carries operations
+        String halfmove = "0";
+        String fullmove = "1";
+        int countersStart = skipSpaces(text, pos);
+        int halfmoveEnd = nextSpace(text, countersStart);
+        int fullmoveStart = skipSpaces(text, halfmoveEnd);
+        int fullmoveEnd = nextSpace(text, fullmoveStart);
+        if (isNumber(text, countersStart, halfmoveEnd) && isNumber(text, fullmoveStart, fullmoveEnd)) {
+            halfmove = text.substring(countersStart, halfmoveEnd);
+            fullmove = text.substring(fullmoveStart, fullmoveEnd);
+            pos = fullmoveEnd;
+        }
+
+        Map<String, String> operations = parseOperations(text.substring(pos));
+        if (operations.containsKey("hmvc")) {
+            halfmove = operations.get("hmvc");
+        }
+        if (operations.containsKey("fmvn")) {
+            fullmove = operations.get("fmvn");
+        }
+
+        String fen = String.join(" ", fields) + " " + halfmove + " " + fullmove;
+        if (!FenParser.isValidFen(fen)) {
+            throw new IllegalArgumentException("Invalid position: " + line);
+        }
+        return new Record(fen, Collections.unmodifiableMap(operations));
+    }
+
+    /**
+     * Splits "op operand; op operand;" into a map, keeping semicolons inside quotes.
+     */
+    private static Map<String, String> parseOperations(String text) {
+        Map<String, String> operations = new LinkedHashMap<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            if (c == ';' && !quoted) {
+                addOperation(operations, current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        addOperation(operations, current.toString());
+        return operations;
+    }
+
+    private static void addOperation(Map<String, String> operations, String operation) {
+        String text = operation.trim();
+        if (text.isEmpty()) {
+            return;
+        }
+        int end = nextSpace(text, 0);
+        String opcode = text.substring(0, end);
+        String operand = text.substring(end).trim();
+        if (operand.length() >= 2 && operand.startsWith("\"") && operand.endsWith("\"")) {
+            operand = operand.substring(1, operand.length() - 1);
+        }
+        operations.put(opcode, operand);
+    }
+
+    private static int skipSpaces(String text, int pos) {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int nextSpace(String text, int pos) {
+        while (pos < text.length() && !Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isNumber(String text, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
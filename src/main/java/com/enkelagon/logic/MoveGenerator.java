@@ -2,15 +2,263 @@ package com.enkelagon.logic;
 
 import com.enkelagon.model.*;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Generates legal moves for the current position.
- * Uses Stockfish for authoritative move generation.
+ * Legal moves are generated directly from the Board bitboards (pins, checks,
+ * castling through attacked squares, en passant and promotions), so no engine
+ * round-trip is needed.
  */
 public class MoveGenerator {
 
+    /** Upper bound on legal moves in any position (218), rounded up. */
+    public static final int MAX_MOVES = 256;
+
+    private static final int[] PROMOTION_TYPES = {Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT};
+
+    /**
+     * Writes all legal moves for the side to move into {@code moves} as packed ints
+     * (see {@link PackedMove}) and returns how many were written. Allocates nothing;
+     * the buffer must hold at least {@link #MAX_MOVES} entries.
+     */
+    public int generateLegalMoves(Board board, int[] moves) {
+        boolean white = board.isWhiteToMove();
+        int us = white ? 0 : 1;
+        long ours = board.getOccupancy(white);
+        long theirs = board.getOccupancy(!white);
+        long occupied = ours | theirs;
+
+        int kingSq = board.getKingSquare(white);
+        if (kingSq == Board.NO_SQUARE) {
+            return 0;
+        }
+
+        int count = 0;
+        long checkers = attackersTo(board, kingSq, occupied, !white);
+
+        // King moves: test each target with the king lifted off the board,
+        // so it cannot hide behind itself along a checking ray
+        long withoutKing = occupied ^ Bitboard.bit(kingSq);
+        long kingTargets = Bitboard.KING_ATTACKS[kingSq] & ~ours;
+        while (kingTargets != 0) {
+            int to = Bitboard.lsb(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (attackersTo(board, to, withoutKing, !white) == 0) {
+                moves[count++] = PackedMove.of(kingSq, to);
+            }
+        }
+
+        // Double check: only the king may move
+        if (Long.bitCount(checkers) > 1) {
+            return count;
+        }
+
+        // In check: other pieces must capture the checker or block the ray
+        long targetMask = ~ours;
+        if (checkers != 0) {
+            targetMask &= checkers | Bitboard.between(kingSq, Bitboard.lsb(checkers));
+        }
+        long pinned = pinnedPieces(board, kingSq, white, occupied, ours);
+
+        // Knights (a pinned knight can never move)
+        long knights = board.getPieceBitboard(Piece.of(Piece.KNIGHT, white)) & ~pinned;
+        while (knights != 0) {
+            int from = Bitboard.lsb(knights);
+            knights &= knights - 1;
+            count = addMoves(moves, count, from, Bitboard.KNIGHT_ATTACKS[from] & targetMask);
+        }
+
+        // Sliders: pinned pieces stay on the line through their king
+        long queens = board.getPieceBitboard(Piece.of(Piece.QUEEN, white));
+        long diagonal = board.getPieceBitboard(Piece.of(Piece.BISHOP, white)) | queens;
+        while (diagonal != 0) {
+            int from = Bitboard.lsb(diagonal);
+            diagonal &= diagonal - 1;
+            long targets = Bitboard.bishopAttacks(from, occupied) & targetMask;
+            if ((pinned & Bitboard.bit(from)) != 0) {
+                targets &= Bitboard.line(kingSq, from);
+            }
+            count = addMoves(moves, count, from, targets);
+        }
+        long straight = board.getPieceBitboard(Piece.of(Piece.ROOK, white)) | queens;
+        while (straight != 0) {
+            int from = Bitboard.lsb(straight);
+            straight &= straight - 1;
+            long targets = Bitboard.rookAttacks(from, occupied) & targetMask;
+            if ((pinned & Bitboard.bit(from)) != 0) {
+                targets &= Bitboard.line(kingSq, from);
+            }
+            count = addMoves(moves, count, from, targets);
+        }
+
+        // Pawns
+        int forward = white ? 8 : -8;
+        long startRank = white ? Bitboard.RANK_1 << 8 : Bitboard.RANK_8 >>> 8;
+        int epSquare = board.getEnPassantSquare();
+        long pawns = board.getPieceBitboard(Piece.of(Piece.PAWN, white));
+        while (pawns != 0) {
+            int from = Bitboard.lsb(pawns);
+            pawns &= pawns - 1;
+            long allowed = (pinned & Bitboard.bit(from)) != 0 ? Bitboard.line(kingSq, from) : Bitboard.ALL;
+
+            int single = from + forward;
+            if ((occupied & Bitboard.bit(single)) == 0) {
+                if ((targetMask & allowed & Bitboard.bit(single)) != 0) {
+                    count = addPawnMove(moves, count, from, single);
+                }
+                int push = single + forward;
+                if ((startRank & Bitboard.bit(from)) != 0 && (occupied & Bitboard.bit(push)) == 0
+                        && (targetMask & allowed & Bitboard.bit(push)) != 0) {
+                    moves[count++] = PackedMove.of(from, push);
+                }
+            }
+
+            long captures = Bitboard.PAWN_ATTACKS[us][from] & theirs & targetMask & allowed;
+            while (captures != 0) {
+                int to = Bitboard.lsb(captures);
+                captures &= captures - 1;
+                count = addPawnMove(moves, count, from, to);
+            }
+
+            // En passant: replay the capture on the occupancy and test the king directly,
+            // which covers pins, checks and the two pawns leaving the same rank
+            if (epSquare != Board.NO_SQUARE && (Bitboard.PAWN_ATTACKS[us][from] & Bitboard.bit(epSquare)) != 0) {
+                long capturedPawn = Bitboard.bit(epSquare - forward);
+                long after = occupied ^ Bitboard.bit(from) ^ Bitboard.bit(epSquare) ^ capturedPawn;
+                if ((attackersTo(board, kingSq, after, !white) & ~capturedPawn) == 0) {
+                    moves[count++] = PackedMove.of(from, epSquare, PackedMove.FLAG_EN_PASSANT);
+                }
+            }
+        }
+
+        // Castling: not out of, through, or into check
+        if (checkers == 0) {
+            int rights = board.getCastlingRights();
+            int kingside = white ? Board.WHITE_KINGSIDE : Board.BLACK_KINGSIDE;
+            int queenside = white ? Board.WHITE_QUEENSIDE : Board.BLACK_QUEENSIDE;
+            int home = white ? Bitboard.E1 : Bitboard.E8;
+            long rooks = board.getPieceBitboard(Piece.of(Piece.ROOK, white));
+
+            if (kingSq == home && (rights & kingside) != 0 && (rooks & Bitboard.bit(home + 3)) != 0
+                    && (occupied & Bitboard.between(home, home + 3)) == 0
+                    && attackersTo(board, home + 1, occupied, !white) == 0
+                    && attackersTo(board, home + 2, occupied, !white) == 0) {
+                moves[count++] = PackedMove.of(home, home + 2, PackedMove.FLAG_CASTLING);
+            }
+            if (kingSq == home && (rights & queenside) != 0 && (rooks & Bitboard.bit(home - 4)) != 0
+                    && (occupied & Bitboard.between(home, home - 4)) == 0
+                    && attackersTo(board, home - 1, occupied, !white) == 0
+                    && attackersTo(board, home - 2, occupied, !white) == 0) {
+                moves[count++] = PackedMove.of(home, home - 2, PackedMove.FLAG_CASTLING);
+            }
+        }
+
+        return count;
+    }
+
+    private static int addMoves(int[] moves, int count, int from, long targets) {
+        while (targets != 0) {
+            int to = Bitboard.lsb(targets);
+            targets &= targets - 1;
+            moves[count++] = PackedMove.of(from, to);
+        }
+        return count;
+    }
+
+    private static int addPawnMove(int[] moves, int count, int from, int to) {
+        if ((Bitboard.bit(to) & (Bitboard.RANK_1 | Bitboard.RANK_8)) != 0) {
+            for (int type : PROMOTION_TYPES) {
+                moves[count++] = PackedMove.promotion(from, to, type);
+            }
+        } else {
+            moves[count++] = PackedMove.of(from, to);
+        }
+        return count;
+    }
+
+    /**
+     * Returns our pieces that are the only blocker between our king and an enemy slider.
+     */
+    private static long pinnedPieces(Board board, int kingSq, boolean white, long occupied, long ours) {
+        long theirQueens = board.getPieceBitboard(Piece.of(Piece.QUEEN, !white));
+        long snipers = (Bitboard.rookAttacks(kingSq, 0L)
+                & (board.getPieceBitboard(Piece.of(Piece.ROOK, !white)) | theirQueens))
+                | (Bitboard.bishopAttacks(kingSq, 0L)
+                & (board.getPieceBitboard(Piece.of(Piece.BISHOP, !white)) | theirQueens));
+
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Bitboard.lsb(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboard.between(kingSq, sniper) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & ours;
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Returns the pieces of the given colour that attack a square, treating
+     * {@code occupied} as the set of blocking squares for sliders.
+     */
+    public long attackersTo(Board board, int square, long occupied, boolean byWhite) {
+        long queens = board.getPieceBitboard(Piece.of(Piece.QUEEN, byWhite));
+        return (Bitboard.PAWN_ATTACKS[byWhite ? 1 : 0][square] & board.getPieceBitboard(Piece.of(Piece.PAWN, byWhite)))
+                | (Bitboard.KNIGHT_ATTACKS[square] & board.getPieceBitboard(Piece.of(Piece.KNIGHT, byWhite)))
+                | (Bitboard.KING_ATTACKS[square] & board.getPieceBitboard(Piece.of(Piece.KING, byWhite)))
+                | (Bitboard.bishopAttacks(square, occupied)
+                        & (board.getPieceBitboard(Piece.of(Piece.BISHOP, byWhite)) | queens))
+                | (Bitboard.rookAttacks(square, occupied)
+                        & (board.getPieceBitboard(Piece.of(Piece.ROOK, byWhite)) | queens));
+    }
+
+    /**
+     * Checks whether a square is attacked by the given colour.
+     */
+    public boolean isSquareAttacked(Board board, int square, boolean byWhite) {
+        return attackersTo(board, square, board.getOccupancy(), byWhite) != 0;
+    }
+
+    /**
+     * Checks whether the side to move is in check.
+     */
+    public boolean isInCheck(Board board) {
+        boolean white = board.isWhiteToMove();
+        int kingSq = board.getKingSquare(white);
+        return kingSq != Board.NO_SQUARE && isSquareAttacked(board, kingSq, !white);
+    }
+
+    /**
+     * Returns all legal moves for the side to move in UCI notation.
+     */
+    public Set<String> getLegalMoves(Board board) {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(board, moves);
+        Set<String> result = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            result.add(PackedMove.toUci(moves[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns all legal moves for the side to move as Move objects.
+     */
+    public List<Move> getLegalMoveList(Board board) {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(board, moves);
+        List<Move> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(PackedMove.toMove(moves[i], board));
+        }
+        return result;
+    }
+
     /**
      * Parses legal moves from Stockfish's response to "go perft 1" or similar.
      * Expected format: "a2a3: 1\na2a4: 1\n..." or just "a2a3 a2a4 ..."
@@ -116,7 +364,7 @@ public class MoveGenerator {
 
     /**
      * Generates pseudo-legal pawn moves (for basic UI hints).
-     * Does not account for pins, checks, etc.
+     * Does not account for pins, checks, etc.; use {@link #generateLegalMoves} for legal moves.
      */
     public Set<Position> getPawnMoves(Board board, Position from) {
         Set<Position> moves = new HashSet<>();
@@ -5,7 +5,7 @@ import com.enkelagon.model.*;
 import java.util.Set;
 
 /**
- * Validates chess moves. For complex validation, delegates to Stockfish.
+ * Validates chess moves against the legal move set produced by {@link MoveGenerator}.
  */
 public class MoveValidator {
 
@@ -16,7 +16,7 @@ public class MoveValidator {
     }
 
     /**
-     * Sets the legal moves from Stockfish's response.
+     * Sets the legal moves for the current position (UCI notation).
      */
     public void setLegalMoves(Set<String> legalMoves) {
         this.legalMoves = legalMoves;
@@ -37,7 +37,7 @@ public class MoveValidator {
     }
 
     /**
-     * Basic validation before checking with engine.
+     * Basic validation before checking against the legal move set.
      * Returns false for obviously illegal moves.
      */
     public boolean basicValidation(Board board, Position from, Position to) {
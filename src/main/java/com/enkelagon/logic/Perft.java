@@ -0,0 +1,202 @@
+package com.enkelagon.logic;
+
+import com.enkelagon.model.Board;
+import com.enkelagon.model.PackedMove;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts leaf nodes of the legal move tree (perft) using the in-process move generator.
+ * Runs single-threaded with make/unmake on one board, or in a ForkJoinPool with one task
+ * per root move. An optional hash table caches subtree counts by Zobrist key and depth.
+ */
+public class Perft {
+
+    private final MoveGenerator generator;
+    private final Cache cache;
+
+    /**
+     * Creates a perft counter without subtree caching.
+     */
+    public Perft() {
+        this(0);
+    }
+
+    /**
+     * Creates a perft counter with a subtree cache of roughly the given size (0 disables it).
+     */
+    public Perft(int cacheSizeMB) {
+        this.generator = new MoveGenerator();
+        this.cache = cacheSizeMB > 0 ? new Cache(cacheSizeMB) : null;
+    }
+
+    /**
+     * Counts leaf nodes at the given depth from a FEN, single-threaded.
+     */
+    public long count(String fen, int depth) {
+        return count(FenParser.parse(fen), depth);
+    }
+
+    /**
+     * Counts leaf nodes at the given depth, single-threaded. The board is left unchanged.
+     */
+    public long count(Board board, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        return search(board, depth, new int[depth][MoveGenerator.MAX_MOVES]);
+    }
+
+    /**
+     * Counts leaf nodes below each root move, keyed by UCI notation in generation order.
+     */
+    public Map<String, Long> divide(Board board, int depth) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (depth <= 0) {
+            return result;
+        }
+        int[][] buffers = new int[depth][MoveGenerator.MAX_MOVES];
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int count = generator.generateLegalMoves(board, rootMoves);
+        for (int i = 0; i < count; i++) {
+            board.makeMove(rootMoves[i]);
+            long nodes = depth == 1 ? 1 : search(board, depth - 1, buffers);
+            board.unmakeMove();
+            result.put(PackedMove.toUci(rootMoves[i]), nodes);
+        }
+        return result;
+    }
+
+    /**
+     * Counts leaf nodes from a FEN, splitting the root moves across the common ForkJoinPool.
+     */
+    public long countParallel(String fen, int depth) {
+        return countParallel(FenParser.parse(fen), depth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts leaf nodes, splitting the root moves across the given pool. Each task works
+     * on its own copy of the board, so the supplied board is left unchanged.
+     */
+    public long countParallel(Board board, int depth, ForkJoinPool pool) {
+        if (depth <= 1) {
+            return count(board, depth);
+        }
+        return pool.invoke(new RootTask(new Board(board), depth));
+    }
+
+    private long search(Board board, int depth, int[][] buffers) {
+        int[] moves = buffers[depth - 1];
+        int count = generator.generateLegalMoves(board, moves);
+        if (depth == 1) {
+            return count;
+        }
+
+        long key = 0;
+        if (cache != null) {
+            key = board.getZobristKey();
+            long cached = cache.probe(key, depth);
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            nodes += search(board, depth - 1, buffers);
+            board.unmakeMove();
+        }
+
+        if (cache != null) {
+            cache.store(key, depth, nodes);
+        }
+        return nodes;
+    }
+
+    /**
+     * Splits a position into one subtask per legal move.
+     */
+    private class RootTask extends RecursiveTask<Long> {
+        private final Board board;
+        private final int depth;
+
+        RootTask(Board board, int depth) {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = generator.generateLegalMoves(board, moves);
+            List<SubtreeTask> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Board child = new Board(board);
+                child.makeMove(moves[i]);
+                tasks.add(new SubtreeTask(child, depth - 1));
+            }
+            long nodes = 0;
+            for (SubtreeTask task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    private class SubtreeTask extends RecursiveTask<Long> {
+        private final Board board;
+        private final int depth;
+
+        SubtreeTask(Board board, int depth) {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return count(board, depth);
+        }
+    }
+
+    /**
+     * Fixed-size, always-replace table of subtree counts. Each slot stores
+     * (key ^ count, count); a read is accepted only if the XOR checks out, so
+     * concurrent writers can race without locks and torn entries read as misses.
+     */
+    private static final class Cache {
+        private final long[] slots;
+        private final int mask;
+
+        Cache(int sizeMB) {
+            long entries = Long.highestOneBit(Math.max(1L, (long) sizeMB * 1024 * 1024 / 16));
+            int capacity = (int) Math.min(entries, 1 << 28);
+            this.slots = new long[capacity * 2];
+            this.mask = capacity - 1;
+        }
+
+        private static long mix(long key, int depth) {
+            return key ^ (depth * 0x9E3779B97F4A7C15L);
+        }
+
+        long probe(long key, int depth) {
+            long check = mix(key, depth);
+            int index = ((int) (check ^ (check >>> 32)) & mask) << 1;
+            long stored = slots[index];
+            long nodes = slots[index + 1];
+            return (stored ^ nodes) == check ? nodes : -1;
+        }
+
+        void store(long key, int depth, long nodes) {
+            long check = mix(key, depth);
+            int index = ((int) (check ^ (check >>> 32)) & mask) << 1;
+            slots[index] = check ^ nodes;
+            slots[index + 1] = nodes;
+        }
+    }
+}
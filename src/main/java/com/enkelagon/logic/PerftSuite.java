@@ -0,0 +1,175 @@
+package com.enkelagon.logic;
+
+import com.enkelagon.engine.StockfishEngine;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Perft regression suite: standard positions plus en passant, castling and promotion
+ * edge cases, with node counts taken from Stockfish's "go perft". Run it to check the
+ * move generator and to get a nodes-per-second figure for the model layer.
+ *
+ * <pre>
+ * java -cp target/classes com.enkelagon.logic.PerftSuite [--parallel] [--cache MB] [--stockfish [path]]
+ * </pre>
+ */
+public class PerftSuite {
+
+    public enum Entry {
+        START_POSITION("Start position",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 5, 4865609L),
+        KIWIPETE("Kiwipete",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4085603L),
+        POSITION_3("Position 3",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674624L),
+        POSITION_4("Position 4",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4, 422333L),
+        POSITION_4_MIRRORED("Position 4 mirrored",
+                "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1", 4, 422333L),
+        POSITION_5("Position 5",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2103487L),
+        MIDDLEGAME("Middlegame",
+                "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P3/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3065277L),
+        ILLEGAL_EN_PASSANT_PIN_ALONG_RANK("Illegal en passant (pin along rank)",
+                "3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1", 6, 1134888L),
+        ILLEGAL_EN_PASSANT_DIAGONAL_PIN("Illegal en passant (diagonal pin)",
+                "8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1", 6, 1015133L),
+        ILLEGAL_EN_PASSANT_DISCOVERED_CHECK("Illegal en passant (discovered check)",
+                "8/5bk1/8/2Pp4/8/1K6/8/8 w - d6 0 1", 6, 824064L),
+        EN_PASSANT_CAPTURE_CHECKS_OPPONENT("En passant capture checks opponent",
+                "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1", 6, 1440467L),
+        SHORT_CASTLING_GIVES_CHECK("Short castling gives check",
+                "5k2/8/8/8/8/8/8/4K2R w K - 0 1", 6, 661072L),
+        LONG_CASTLING_GIVES_CHECK("Long castling gives check",
+                "3k4/8/8/8/8/8/8/R3K3 w Q - 0 1", 6, 803711L),
+        CASTLING_RIGHTS_LOST_BY_CAPTURE("Castling rights lost by capture",
+                "r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1", 4, 1274206L),
+        CASTLING_PREVENTED_BY_ATTACKS("Castling prevented by attacks",
+                "r3k2r/8/3Q4/8/8/5q2/8/R3K2R b KQkq - 0 1", 4, 1720476L),
+        PROMOTE_OUT_OF_CHECK("Promote out of check",
+                "2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1", 6, 3821001L),
+        DISCOVERED_CHECK("Discovered check",
+                "8/8/1P2K3/8/2n5/1q6/8/5k2 b - - 0 1", 5, 1004658L),
+        PROMOTE_TO_GIVE_CHECK("Promote to give check",
+                "4k3/1P6/8/8/8/8/K7/8 w - - 0 1", 6, 217342L),
+        UNDERPROMOTE_TO_CHECK("Underpromote to check",
+                "8/P1k5/K7/8/8/8/8/8 w - - 0 1", 6, 92683L),
+        PROMOTION_BONANZA("Promotion bonanza",
+                "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1", 5, 3605103L),
+        SELF_STALEMATE("Self stalemate",
+                "K1k5/8/P7/8/8/8/8/8 w - - 0 1", 6, 2217L),
+        STALEMATE_AND_CHECKMATE("Stalemate and checkmate",
+                "8/k1P5/8/1K6/8/8/8/8 w - - 0 1", 7, 567584L),
+        STALEMATE_AND_CHECKMATE_2("Stalemate and checkmate 2",
+                "8/8/2k5/5q2/5n2/8/5K2/8 b - - 0 1", 4, 23527L);
+
+        private final String displayName;
+        private final String fen;
+        private final int depth;
+        private final long nodes;
+
+        Entry(String displayName, String fen, int depth, long nodes) {
+            this.displayName = displayName;
+            this.fen = fen;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getFen() {
+            return fen;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+    }
+
+    private PerftSuite() {
+        // Command-line tool
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean parallel = false;
+        int cacheMB = 0;
+        boolean crossCheck = false;
+        String stockfishPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--parallel" -> parallel = true;
+                case "--cache" -> cacheMB = Integer.parseInt(args[++i]);
+                case "--stockfish" -> {
+                    crossCheck = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        stockfishPath = args[++i];
+                    }
+                }
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        StockfishEngine engine = null;
+        if (crossCheck) {
+            engine = stockfishPath != null ? new StockfishEngine(stockfishPath) : new StockfishEngine();
+            engine.start();
+        }
+
+        Perft perft = new Perft(cacheMB);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int failures = 0;
+        long totalNodes = 0;
+        long totalNanos = 0;
+
+        try {
+            for (Entry entry : Entry.values()) {
+                long start = System.nanoTime();
+                long nodes = parallel
+                        ? perft.countParallel(FenParser.parse(entry.fen), entry.depth, pool)
+                        : perft.count(entry.fen, entry.depth);
+                long elapsed = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalNanos += elapsed;
+
+                boolean ok = nodes == entry.nodes;
+                String engineNote = "";
+                if (engine != null) {
+                    long engineNodes = engine.perft(entry.fen, entry.depth);
+                    ok &= engineNodes == nodes;
+                    engineNote = " stockfish=" + engineNodes;
+                }
+                if (!ok) {
+                    failures++;
+                }
+
+                System.out.printf("%-4s %-40s depth %d  nodes %,12d  expected %,12d  %7.1f ms  %6.2f Mnps%s%n",
+                        ok ? "ok" : "FAIL", entry.displayName, entry.depth, nodes, entry.nodes,
+                        elapsed / 1e6, nodes * 1e3 / Math.max(1, elapsed), engineNote);
+            }
+        } finally {
+            if (engine != null) {
+                engine.shutdown();
+            }
+        }
+
+        System.out.printf("%nTotal: %,d nodes in %.2f s (%.2f Mnps, %s%s), %d failure(s)%n",
+                totalNodes, totalNanos / 1e9, totalNodes * 1e3 / Math.max(1, totalNanos),
+                parallel ? "parallel x" + pool.getParallelism() : "single-threaded",
+                cacheMB > 0 ? ", " + cacheMB + " MB cache" : "", failures);
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -25,6 +25,15 @@ public class PgnHandler {
      * Exports a game to PGN format.
      */
     public String exportToPgn(Game game) {
+        return exportToPgn(game, null);
+    }
+
+    /**
+     * Exports a game to PGN format with a comment after each move. comments holds one
+     * entry per ply (null or empty for none), e.g. "[%eval 0.35]"; it may be shorter
+     * than the game, or null.
+     */
+    public String exportToPgn(Game game, List<String> comments) {
         StringBuilder pgn = new StringBuilder();
 
         // Standard tags
@@ -37,8 +46,8 @@ public class PgnHandler {
         pgn.append("[Result \"").append(game.getResultString()).append("\"]\n");
 
         // FEN if not starting position
-        String startFen = game.getCurrentFen();
-        if (!Board.STARTING_FEN.equals(startFen) && game.getMoveCount() == 0) {
+        String startFen = game.getStartFen();
+        if (!Board.STARTING_FEN.equals(startFen)) {
             pgn.append("[FEN \"").append(startFen).append("\"]\n");
             pgn.append("[SetUp \"1\"]\n");
         }
@@ -56,7 +65,7 @@ public class PgnHandler {
         pgn.append("\n");
 
         // Moves
-        pgn.append(formatMoves(game));
+        pgn.append(formatMoves(game, comments));
 
         // Result
         pgn.append(" ").append(game.getResultString());
@@ -67,21 +76,37 @@ public class PgnHandler {
     /**
      * Formats moves in PGN notation.
      */
-    private String formatMoves(Game game) {
+    private String formatMoves(Game game, List<String> comments) {
         StringBuilder sb = new StringBuilder();
         List<Move> moves = game.getMoveHistory();
+        // Move numbers follow the start position, which may have Black to move
+        String[] startFields = game.getStartFen().split(" ");
+        boolean blackFirst = startFields.length > 1 && startFields[1].equals("b");
+        int firstMoveNumber = firstMoveNumber(startFields);
 
         int lineLength = 0;
+        boolean afterComment = false;
         for (int i = 0; i < moves.size(); i++) {
+            int ply = blackFirst ? i + 1 : i;
+            int moveNumber = firstMoveNumber + ply / 2;
             String moveStr;
-            if (i % 2 == 0) {
+            if (ply % 2 == 0) {
                 // White's move
-                moveStr = (i / 2 + 1) + ". " + moves.get(i).toAlgebraic();
+                moveStr = moveNumber + ". " + moves.get(i).toAlgebraic();
+            } else if (i == 0 || afterComment) {
+                // Black's move, after a comment or at the start, needs its number again
+                moveStr = moveNumber + "... " + moves.get(i).toAlgebraic();
             } else {
                 // Black's move
                 moveStr = moves.get(i).toAlgebraic();
             }
 
+            String comment = comments != null && i < comments.size() ? comments.get(i) : null;
+            afterComment = comment != null && !comment.isEmpty();
+            if (afterComment) {
+                moveStr += " {" + comment.replace("}", ")") + "}";
+            }
+
             // Add space between moves
             if (sb.length() > 0 && !sb.toString().endsWith("\n")) {
                 sb.append(" ");
@@ -101,6 +126,17 @@ public class PgnHandler {
         return sb.toString();
     }
 
+    private static int firstMoveNumber(String[] fields) {
+        if (fields.length > 5) {
+            try {
+                return Math.max(1, Integer.parseInt(fields[5]));
+            } catch (NumberFormatException e) {
+                // Fall through
+            }
+        }
+        return 1;
+    }
+
     /**
      * Saves a game to a PGN file.
      */
@@ -0,0 +1,206 @@
+package com.enkelagon.logic;
+
+import com.enkelagon.model.Bitboard;
+import com.enkelagon.model.Board;
+import com.enkelagon.model.PackedMove;
+import com.enkelagon.model.Piece;
+
+/**
+ * Standard algebraic notation for packed moves: writing it with the file/rank
+ * disambiguation and check marks that PGN and EPD expect, and reading it back.
+ * <p>
+ * Both directions work on the board before the move. The board is changed while a check
+ * mark is worked out but left as it was on return.
+ */
+public class SanNotation {
+
+    /** SAN letter by piece type index; pawns have none. */
+    private static final String LETTERS = "KQRBNP";
+
+    private final MoveGenerator generator = new MoveGenerator();
+
+    /**
+     * Returns the SAN of a legal move, e.g. "Nbd7", "exd6", "e8=Q+" or "O-O-O#".
+     */
+    public String toSan(Board board, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        StringBuilder sb = new StringBuilder(8);
+
+        if (PackedMove.isCastling(move)) {
+            sb.append(Bitboard.fileOf(to) > Bitboard.fileOf(from) ? "O-O" : "O-O-O");
+        } else {
+            Piece piece = board.pieceAt(from);
+            int type = piece.getTypeIndex();
+            boolean capture = board.pieceAt(to) != null || PackedMove.isEnPassant(move);
+
+            if (type == Piece.PAWN) {
+                if (capture) {
+                    sb.append((char) ('a' + Bitboard.fileOf(from)));
+                }
+            } else {
+                sb.append(LETTERS.charAt(type));
+                appendDisambiguation(sb, board, piece, from, to);
+            }
+            if (capture) {
+                sb.append('x');
+            }
+            sb.append(Bitboard.toAlgebraic(to));
+            if (PackedMove.isPromotion(move)) {
+                sb.append('=').append(LETTERS.charAt(PackedMove.promotionType(move)));
+            }
+        }
+
+        board.makeMove(move);
+        try {
+            if (generator.isInCheck(board)) {
+                int[] replies = new int[MoveGenerator.MAX_MOVES];
+                sb.append(generator.generateLegalMoves(board, replies) == 0 ? '#' : '+');
+            }
+        } finally {
+            board.unmakeMove();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Adds the origin file, rank or both when another piece of the same kind can also
+     * reach the destination: file if that tells them apart, else rank, else both.
+     */
+    private void appendDisambiguation(StringBuilder sb, Board board, Piece piece, int from, int to) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = generator.generateLegalMoves(board, moves);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < count; i++) {
+            int other = PackedMove.from(moves[i]);
+            if (other != from && PackedMove.to(moves[i]) == to && board.pieceAt(other) == piece) {
+                ambiguous = true;
+                sameFile |= Bitboard.fileOf(other) == Bitboard.fileOf(from);
+                sameRank |= Bitboard.rankOf(other) == Bitboard.rankOf(from);
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            sb.append((char) ('a' + Bitboard.fileOf(from)));
+        } else if (!sameRank) {
+            sb.append((char) ('1' + Bitboard.rankOf(from)));
+        } else {
+            sb.append(Bitboard.toAlgebraic(from));
+        }
+    }
+
+    /**
+     * Finds the legal move a SAN string names. Check marks, annotations ("!", "?"),
+     * a missing or extra capture sign, over-specified origins, "0-0" castling and
+     * promotions written without "=" are all accepted.
+     *
+     * @return the packed move, or NONE if no legal move or more than one matches
+     */
+    public int parse(Board board, String san) {
+        String text = san.trim();
+        if (text.endsWith("e.p.")) {
+            text = text.substring(0, text.length() - 4).trim();
+        }
+        int end = text.length();
+        while (end > 0 && "+#!?".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        text = text.substring(0, end);
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = generator.generateLegalMoves(board, moves);
+
+        String castling = text.replace('0', 'O');
+        if (castling.equals("O-O") || castling.equals("O-O-O")) {
+            boolean kingside = castling.equals("O-O");
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (PackedMove.isCastling(move)
+                        && (Bitboard.fileOf(PackedMove.to(move)) > Bitboard.fileOf(PackedMove.from(move))) == kingside) {
+                    return move;
+                }
+            }
+            return PackedMove.NONE;
+        }
+
+        // Piece letter, then origin hints, then destination, then promotion
+        int type = Piece.PAWN;
+        int start = 0;
+        if (!text.isEmpty() && "KQRBN".indexOf(text.charAt(0)) >= 0) {
+            type = LETTERS.indexOf(text.charAt(0));
+            start = 1;
+        }
+        int promotion = 0;
+        int promotionAt = text.indexOf('=');
+        if (promotionAt >= 0) {
+            if (promotionAt + 1 >= text.length()) {
+                return PackedMove.NONE;
+            }
+            promotion = promotionType(text.charAt(promotionAt + 1));
+            text = text.substring(0, promotionAt);
+        } else if (type == Piece.PAWN && text.length() >= 3
+                && Character.isDigit(text.charAt(text.length() - 2))) {
+            promotion = promotionType(text.charAt(text.length() - 1));
+            if (promotion != 0) {
+                text = text.substring(0, text.length() - 1);
+            }
+        }
+        if (text.length() - start < 2) {
+            return PackedMove.NONE;
+        }
+
+        int toFile = text.charAt(text.length() - 2) - 'a';
+        int toRank = text.charAt(text.length() - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return PackedMove.NONE;
+        }
+        int to = Bitboard.square(toFile, toRank);
+
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < text.length() - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != '-' && c != ':') {
+                return PackedMove.NONE;
+            }
+        }
+
+        int match = PackedMove.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) != to
+                    || PackedMove.isCastling(move)
+                    || board.pieceAt(from).getTypeIndex() != type
+                    || PackedMove.promotionType(move) != promotion
+                    || (fromFile >= 0 && Bitboard.fileOf(from) != fromFile)
+                    || (fromRank >= 0 && Bitboard.rankOf(from) != fromRank)) {
+                continue;
+            }
+            if (match != PackedMove.NONE) {
+                // Ambiguous
+                return PackedMove.NONE;
+            }
+            match = move;
+        }
+        return match;
+    }
+
+    private static int promotionType(char c) {
+        return switch (Character.toUpperCase(c)) {
+            case 'Q' -> Piece.QUEEN;
+            case 'R' -> Piece.ROOK;
+            case 'B' -> Piece.BISHOP;
+            case 'N' -> Piece.KNIGHT;
+            default -> 0;
+        };
+    }
+}
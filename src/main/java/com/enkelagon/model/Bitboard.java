@@ -0,0 +1,226 @@
+package com.enkelagon.model;
+
+/**
+ * Bitboard constants and helpers. Square indices run a1 = 0 .. h8 = 63,
+ * so bit {@code rank * 8 + file} of a {@code long} represents that square.
+ */
+public final class Bitboard {
+
+    public static final long EMPTY = 0L;
+    public static final long ALL = ~0L;
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    // Squares used by castling and castling-rights bookkeeping
+    public static final int A1 = 0;
+    public static final int C1 = 2;
+    public static final int D1 = 3;
+    public static final int E1 = 4;
+    public static final int F1 = 5;
+    public static final int G1 = 6;
+    public static final int H1 = 7;
+    public static final int A8 = 56;
+    public static final int C8 = 58;
+    public static final int D8 = 59;
+    public static final int E8 = 60;
+    public static final int F8 = 61;
+    public static final int G8 = 62;
+    public static final int H8 = 63;
+
+    /** Leaper attack tables, indexed by square. */
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    /** Pawn capture targets, indexed [colour][square] (0 = white, 1 = black). */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // Sliding rays: N, E, NE, NW grow towards h8; S, W, SW, SE grow towards a1
+    private static final int NORTH = 0;
+    private static final int EAST = 1;
+    private static final int NORTH_EAST = 2;
+    private static final int NORTH_WEST = 3;
+    private static final int SOUTH = 4;
+    private static final int WEST = 5;
+    private static final int SOUTH_WEST = 6;
+    private static final int SOUTH_EAST = 7;
+    private static final int[] DIR_FILE = {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] DIR_RANK = {1, 0, 1, 1, -1, 0, -1, -1};
+    private static final long[][] RAYS = new long[8][64];
+
+    /** Squares strictly between two aligned squares, empty otherwise. */
+    private static final long[][] BETWEEN = new long[64][64];
+    /** The full line through two aligned squares, empty otherwise. */
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        for (int sq = 0; sq < 64; sq++) {
+            int file = fileOf(sq);
+            int rank = rankOf(sq);
+
+            for (int[] step : knightSteps) {
+                KNIGHT_ATTACKS[sq] |= maskIfOnBoard(file + step[0], rank + step[1]);
+            }
+            for (int df = -1; df <= 1; df++) {
+                for (int dr = -1; dr <= 1; dr++) {
+                    if (df != 0 || dr != 0) {
+                        KING_ATTACKS[sq] |= maskIfOnBoard(file + df, rank + dr);
+                    }
+                }
+            }
+            PAWN_ATTACKS[0][sq] = maskIfOnBoard(file - 1, rank + 1) | maskIfOnBoard(file + 1, rank + 1);
+            PAWN_ATTACKS[1][sq] = maskIfOnBoard(file - 1, rank - 1) | maskIfOnBoard(file + 1, rank - 1);
+
+            for (int dir = 0; dir < 8; dir++) {
+                int f = file + DIR_FILE[dir];
+                int r = rank + DIR_RANK[dir];
+                while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    RAYS[dir][sq] |= bit(square(f, r));
+                    f += DIR_FILE[dir];
+                    r += DIR_RANK[dir];
+                }
+            }
+        }
+
+        for (int a = 0; a < 64; a++) {
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = RAYS[dir][a];
+                long rest = ray;
+                while (rest != 0) {
+                    int b = lsb(rest);
+                    rest &= rest - 1;
+                    int opposite = (dir + 4) & 7;
+                    BETWEEN[a][b] = ray & RAYS[opposite][b];
+                    LINE[a][b] = ray | RAYS[opposite][a] | bit(a);
+                }
+            }
+        }
+    }
+
+    private Bitboard() {
+        // Utility class
+    }
+
+    private static long maskIfOnBoard(int file, int rank) {
+        return file >= 0 && file < 8 && rank >= 0 && rank < 8 ? bit(square(file, rank)) : 0L;
+    }
+
+    /**
+     * Rook attacks from a square given the occupied squares (blockers are included).
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return positiveRay(NORTH, square, occupied) | positiveRay(EAST, square, occupied)
+                | negativeRay(SOUTH, square, occupied) | negativeRay(WEST, square, occupied);
+    }
+
+    /**
+     * Bishop attacks from a square given the occupied squares (blockers are included).
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return positiveRay(NORTH_EAST, square, occupied) | positiveRay(NORTH_WEST, square, occupied)
+                | negativeRay(SOUTH_WEST, square, occupied) | negativeRay(SOUTH_EAST, square, occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    private static long positiveRay(int dir, int square, long occupied) {
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[dir][lsb(blockers)];
+        }
+        return attacks;
+    }
+
+    private static long negativeRay(int dir, int square, long occupied) {
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[dir][msb(blockers)];
+        }
+        return attacks;
+    }
+
+    /**
+     * Returns the squares strictly between a and b if they share a rank, file or diagonal.
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * Returns the whole line through a and b if they share a rank, file or diagonal.
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Returns a bitboard with only the given square set.
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int square(int file, int rank) {
+        return (rank << 3) | file;
+    }
+
+    public static int fileOf(int square) {
+        return square & 7;
+    }
+
+    public static int rankOf(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Returns the lowest set square. Undefined for an empty bitboard.
+     */
+    public static int lsb(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Returns the highest set square. Undefined for an empty bitboard.
+     */
+    public static int msb(long bitboard) {
+        return 63 - Long.numberOfLeadingZeros(bitboard);
+    }
+
+    public static int popCount(long bitboard) {
+        return Long.bitCount(bitboard);
+    }
+
+    /**
+     * Returns the square index for an array row/col (row 0 = rank 8), as used by the UI.
+     */
+    public static int fromArrayIndices(int row, int col) {
+        return ((7 - row) << 3) | col;
+    }
+
+    /**
+     * Returns the algebraic name of a square (e.g., "e4").
+     */
+    public static String toAlgebraic(int square) {
+        return "" + (char) ('a' + fileOf(square)) + (char) ('1' + rankOf(square));
+    }
+
+    /**
+     * Renders a bitboard as an 8x8 grid, rank 8 first (for debugging).
+     */
+    public static String toString(long bitboard) {
+        StringBuilder sb = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            for (int file = 0; file < 8; file++) {
+                sb.append((bitboard & bit(square(file, rank))) != 0 ? '1' : '.');
+                sb.append(file < 7 ? ' ' : '\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,39 +1,74 @@
 package com.enkelagon.model;
 
+import java.util.Arrays;
+
 /**
  * Represents the chess board state.
+ * Pieces are stored as bitboards, one {@code long} per piece type and colour
+ * (indexed by {@link Piece#ordinal()}), plus one occupancy mask per colour.
+ * A Zobrist key of the position is maintained incrementally alongside them.
+ * Moves made with makeMove can be taken back with unmakeMove, which restores
+ * the previous state from a compact undo record instead of re-parsing a FEN.
  */
 public class Board {
     public static final String STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 
-    private final Piece[][] squares; // [row][col], row 0 = rank 8
+    // Castling rights bit mask
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int NO_SQUARE = -1;
+
+    // Rights kept when a piece moves from or to each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 0xF);
+        CASTLING_MASK[Bitboard.E1] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 0xF;
+        CASTLING_MASK[Bitboard.H1] = ~WHITE_KINGSIDE & 0xF;
+        CASTLING_MASK[Bitboard.A1] = ~WHITE_QUEENSIDE & 0xF;
+        CASTLING_MASK[Bitboard.E8] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 0xF;
+        CASTLING_MASK[Bitboard.H8] = ~BLACK_KINGSIDE & 0xF;
+        CASTLING_MASK[Bitboard.A8] = ~BLACK_QUEENSIDE & 0xF;
+    }
+
+    private final long[] pieces;    // [Piece.ordinal()]
+    private final long[] occupancy; // [0] = white, [1] = black
     private boolean whiteToMove;
-    private boolean whiteKingsideCastle;
-    private boolean whiteQueensideCastle;
-    private boolean blackKingsideCastle;
-    private boolean blackQueensideCastle;
-    private Position enPassantTarget;
+    private int castlingRights;
+    private int enPassantSquare;
     private int halfmoveClock;
     private int fullmoveNumber;
+    private long zobristKey; // excludes en passant, see getZobristKey()
+
+    // Undo stack, one entry per made move. undoState packs the captured piece
+    // (ordinal + 1, 0 = none), castling rights, en passant square + 1 and halfmove clock.
+    private int[] undoMoves;
+    private int[] undoState;
+    private long[] undoKeys;
+    private int undoCount;
 
     public Board() {
-        this.squares = new Piece[8][8];
+        this.pieces = new long[12];
+        this.occupancy = new long[2];
+        allocateUndoStack(64);
         reset();
     }
 
+    /**
+     * Copies the position of another board. The copy starts with an empty undo stack.
+     */
     public Board(Board other) {
-        this.squares = new Piece[8][8];
-        for (int row = 0; row < 8; row++) {
-            System.arraycopy(other.squares[row], 0, this.squares[row], 0, 8);
-        }
+        allocateUndoStack(64);
+        this.pieces = other.pieces.clone();
+        this.occupancy = other.occupancy.clone();
         this.whiteToMove = other.whiteToMove;
-        this.whiteKingsideCastle = other.whiteKingsideCastle;
-        this.whiteQueensideCastle = other.whiteQueensideCastle;
-        this.blackKingsideCastle = other.blackKingsideCastle;
-        this.blackQueensideCastle = other.blackQueensideCastle;
-        this.enPassantTarget = other.enPassantTarget;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
         this.halfmoveClock = other.halfmoveClock;
         this.fullmoveNumber = other.fullmoveNumber;
+        this.zobristKey = other.zobristKey;
     }
 
     public void reset() {
@@ -41,35 +76,107 @@ public class Board {
     }
 
     public void clear() {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                squares[row][col] = null;
-            }
-        }
+        Arrays.fill(pieces, 0L);
+        occupancy[0] = 0L;
+        occupancy[1] = 0L;
         whiteToMove = true;
-        whiteKingsideCastle = false;
-        whiteQueensideCastle = false;
-        blackKingsideCastle = false;
-        blackQueensideCastle = false;
-        enPassantTarget = null;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
         halfmoveClock = 0;
         fullmoveNumber = 1;
+        zobristKey = 0L;
+        undoCount = 0;
+    }
+
+    private void allocateUndoStack(int capacity) {
+        undoMoves = new int[capacity];
+        undoState = new int[capacity];
+        undoKeys = new long[capacity];
+    }
+
+    /**
+     * Returns the piece on a bitboard square (a1 = 0, h8 = 63), or null if empty.
+     */
+    public Piece pieceAt(int square) {
+        long mask = 1L << square;
+        int base;
+        if ((occupancy[0] & mask) != 0) {
+            base = 0;
+        } else if ((occupancy[1] & mask) != 0) {
+            base = 6;
+        } else {
+            return null;
+        }
+        for (int i = base; i < base + 6; i++) {
+            if ((pieces[i] & mask) != 0) {
+                return Piece.fromIndex(i);
+            }
+        }
+        return null;
     }
 
     public Piece getPieceAt(Position pos) {
-        return squares[pos.getArrayRow()][pos.getArrayCol()];
+        return pieceAt(pos.getSquare());
     }
 
     public Piece getPieceAt(int row, int col) {
-        return squares[row][col];
+        return pieceAt(Bitboard.fromArrayIndices(row, col));
     }
 
     public void setPieceAt(Position pos, Piece piece) {
-        squares[pos.getArrayRow()][pos.getArrayCol()] = piece;
+        setPieceAt(pos.getSquare(), piece);
     }
 
     public void setPieceAt(int row, int col, Piece piece) {
-        squares[row][col] = piece;
+        setPieceAt(Bitboard.fromArrayIndices(row, col), piece);
+    }
+
+    /**
+     * Places a piece on a bitboard square, replacing whatever was there (null clears it).
+     */
+    public void setPieceAt(int square, Piece piece) {
+        Piece existing = pieceAt(square);
+        if (existing != null) {
+            removePiece(existing, square);
+        }
+        if (piece != null) {
+            addPiece(piece, square);
+        }
+    }
+
+    private void addPiece(Piece piece, int square) {
+        long mask = 1L << square;
+        pieces[piece.ordinal()] |= mask;
+        occupancy[piece.getColorIndex()] |= mask;
+        zobristKey ^= Zobrist.piece(piece, square);
+    }
+
+    private void removePiece(Piece piece, int square) {
+        long mask = ~(1L << square);
+        pieces[piece.ordinal()] &= mask;
+        occupancy[piece.getColorIndex()] &= mask;
+        zobristKey ^= Zobrist.piece(piece, square);
+    }
+
+    /**
+     * Returns the bitboard of all squares holding the given piece.
+     */
+    public long getPieceBitboard(Piece piece) {
+        return pieces[piece.ordinal()];
+    }
+
+    /**
+     * Returns the bitboard of all pieces of one colour.
+     */
+    public long getOccupancy(boolean white) {
+        return occupancy[white ? 0 : 1];
+    }
+
+    /**
+     * Returns the bitboard of all occupied squares.
+     */
+    public long getOccupancy() {
+        return occupancy[0] | occupancy[1];
     }
 
     public boolean isWhiteToMove() {
@@ -77,27 +184,44 @@ public class Board {
     }
 
     public void setWhiteToMove(boolean whiteToMove) {
+        if (this.whiteToMove != whiteToMove) {
+            zobristKey ^= Zobrist.blackToMove();
+        }
         this.whiteToMove = whiteToMove;
     }
 
     public boolean canWhiteCastleKingside() {
-        return whiteKingsideCastle;
+        return (castlingRights & WHITE_KINGSIDE) != 0;
     }
 
     public boolean canWhiteCastleQueenside() {
-        return whiteQueensideCastle;
+        return (castlingRights & WHITE_QUEENSIDE) != 0;
     }
 
     public boolean canBlackCastleKingside() {
-        return blackKingsideCastle;
+        return (castlingRights & BLACK_KINGSIDE) != 0;
     }
 
     public boolean canBlackCastleQueenside() {
-        return blackQueensideCastle;
+        return (castlingRights & BLACK_QUEENSIDE) != 0;
+    }
+
+    /**
+     * Returns the castling rights as a mask of WHITE_KINGSIDE .. BLACK_QUEENSIDE.
+     */
+    public int getCastlingRights() {
+        return castlingRights;
     }
 
     public Position getEnPassantTarget() {
-        return enPassantTarget;
+        return enPassantSquare == NO_SQUARE ? null : Position.fromSquare(enPassantSquare);
+    }
+
+    /**
+     * Returns the en passant target square index, or NO_SQUARE.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
     public int getHalfmoveClock() {
@@ -112,51 +236,57 @@ public class Board {
      * Applies a move to the board. Does not validate legality.
      */
     public void makeMove(Move move) {
-        Position from = move.getFrom();
-        Position to = move.getTo();
-        Piece piece = getPieceAt(from);
-
-        // Remove piece from source
-        setPieceAt(from, null);
+        makeMove(PackedMove.fromMove(move));
+    }
 
-        // Handle en passant capture
-        if (move.isEnPassant()) {
-            Position capturedPawnPos = new Position(to.getFile(), from.getRank());
-            setPieceAt(capturedPawnPos, null);
+    /**
+     * Applies a packed move (see {@link PackedMove}). Does not validate legality.
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        Piece piece = pieceAt(from);
+        if (piece == null) {
+            throw new IllegalArgumentException("No piece on " + Bitboard.toAlgebraic(from)
+                    + " for move " + PackedMove.toUci(move));
+        }
+        boolean white = piece.isWhite();
+        boolean pawn = piece.getTypeIndex() == Piece.PAWN;
+
+        // Remove captured piece (the pawn beside the target for en passant)
+        int capturedSquare = PackedMove.isEnPassant(move) ? to + (white ? -8 : 8) : to;
+        Piece captured = pieceAt(capturedSquare);
+        pushUndo(move, captured);
+        if (captured != null) {
+            removePiece(captured, capturedSquare);
         }
 
+        // Move the piece, placing the promoted piece if any
+        removePiece(piece, from);
+        addPiece(PackedMove.isPromotion(move) ? Piece.of(PackedMove.promotionType(move), white) : piece, to);
+
         // Handle castling - move the rook
-        if (move.isCastling()) {
-            if (move.isKingsideCastling()) {
-                Position rookFrom = new Position(7, from.getRank());
-                Position rookTo = new Position(5, from.getRank());
-                Piece rook = getPieceAt(rookFrom);
-                setPieceAt(rookFrom, null);
-                setPieceAt(rookTo, rook);
-            } else {
-                Position rookFrom = new Position(0, from.getRank());
-                Position rookTo = new Position(3, from.getRank());
-                Piece rook = getPieceAt(rookFrom);
-                setPieceAt(rookFrom, null);
-                setPieceAt(rookTo, rook);
+        if (PackedMove.isCastling(move)) {
+            Piece rook = white ? Piece.WHITE_ROOK : Piece.BLACK_ROOK;
+            boolean kingside = to > from;
+            int rookFrom = kingside ? from + 3 : from - 4;
+            int rookTo = kingside ? from + 1 : from - 1;
+            if ((pieces[rook.ordinal()] & (1L << rookFrom)) != 0) {
+                removePiece(rook, rookFrom);
+                addPiece(rook, rookTo);
             }
         }
 
-        // Place piece at destination (or promoted piece)
-        if (move.isPromotion()) {
-            setPieceAt(to, move.getPromotionPiece());
-        } else {
-            setPieceAt(to, piece);
-        }
-
-        // Update castling rights
-        updateCastlingRights(move, piece);
+        // King or rook moves and rook captures lose castling rights
+        int previousRights = castlingRights;
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        zobristKey ^= Zobrist.castling(previousRights) ^ Zobrist.castling(castlingRights);
 
-        // Update en passant target
-        updateEnPassantTarget(move, piece);
+        // Double pawn push sets the en passant target
+        enPassantSquare = pawn && Math.abs(to - from) == 16 ? (from + to) >>> 1 : NO_SQUARE;
 
         // Update clocks
-        if (piece == Piece.WHITE_PAWN || piece == Piece.BLACK_PAWN || move.isCapture()) {
+        if (pawn || captured != null) {
             halfmoveClock = 0;
         } else {
             halfmoveClock++;
@@ -168,60 +298,128 @@ public class Board {
 
         // Switch turn
         whiteToMove = !whiteToMove;
+        zobristKey ^= Zobrist.blackToMove();
     }
 
-    private void updateCastlingRights(Move move, Piece piece) {
-        Position from = move.getFrom();
-        Position to = move.getTo();
+    private void pushUndo(int move, Piece captured) {
+        if (undoCount == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, undoCount * 2);
+            undoState = Arrays.copyOf(undoState, undoCount * 2);
+            undoKeys = Arrays.copyOf(undoKeys, undoCount * 2);
+        }
+        undoMoves[undoCount] = move;
+        undoState[undoCount] = (captured == null ? 0 : captured.ordinal() + 1)
+                | (castlingRights << 4)
+                | ((enPassantSquare + 1) << 8)
+                | (Math.min(halfmoveClock, 0xFFFF) << 16);
+        undoKeys[undoCount] = zobristKey;
+        undoCount++;
+    }
 
-        // King moves lose all castling rights for that side
-        if (piece == Piece.WHITE_KING) {
-            whiteKingsideCastle = false;
-            whiteQueensideCastle = false;
-        } else if (piece == Piece.BLACK_KING) {
-            blackKingsideCastle = false;
-            blackQueensideCastle = false;
+    /**
+     * Takes back the last move made with makeMove and returns it (packed).
+     */
+    public int unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to unmake");
         }
+        undoCount--;
+        int move = undoMoves[undoCount];
+        int state = undoState[undoCount];
 
-        // Rook moves or captures lose specific castling rights
-        if (from.equals(new Position(0, 0)) || to.equals(new Position(0, 0))) {
-            blackQueensideCastle = false;
+        whiteToMove = !whiteToMove;
+        if (!whiteToMove) {
+            fullmoveNumber--;
         }
-        if (from.equals(new Position(7, 0)) || to.equals(new Position(7, 0))) {
-            blackKingsideCastle = false;
+
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        Piece moved = pieceAt(to);
+        removePiece(moved, to);
+        addPiece(PackedMove.isPromotion(move) ? Piece.of(Piece.PAWN, whiteToMove) : moved, from);
+
+        if (PackedMove.isCastling(move)) {
+            Piece rook = whiteToMove ? Piece.WHITE_ROOK : Piece.BLACK_ROOK;
+            boolean kingside = to > from;
+            int rookFrom = kingside ? from + 3 : from - 4;
+            int rookTo = kingside ? from + 1 : from - 1;
+            if ((pieces[rook.ordinal()] & (1L << rookTo)) != 0) {
+                removePiece(rook, rookTo);
+                addPiece(rook, rookFrom);
+            }
         }
-        if (from.equals(new Position(0, 7)) || to.equals(new Position(0, 7))) {
-            whiteQueensideCastle = false;
+
+        int capturedIndex = state & 0xF;
+        if (capturedIndex != 0) {
+            int capturedSquare = PackedMove.isEnPassant(move) ? to + (whiteToMove ? -8 : 8) : to;
+            addPiece(Piece.fromIndex(capturedIndex - 1), capturedSquare);
         }
-        if (from.equals(new Position(7, 7)) || to.equals(new Position(7, 7))) {
-            whiteKingsideCastle = false;
+
+        castlingRights = (state >>> 4) & 0xF;
+        enPassantSquare = ((state >>> 8) & 0x7F) - 1;
+        halfmoveClock = state >>> 16;
+        zobristKey = undoKeys[undoCount];
+        return move;
+    }
+
+    /**
+     * Returns how many moves can currently be taken back with unmakeMove.
+     */
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Returns the 64-bit Zobrist key of the position: pieces, side to move, castling
+     * rights and, only when the side to move could actually capture en passant, the
+     * en passant file. Positions that are the same for repetition purposes share a key.
+     */
+    public long getZobristKey() {
+        return zobristKey ^ enPassantKey();
+    }
+
+    private long enPassantKey() {
+        if (enPassantSquare == NO_SQUARE) {
+            return 0L;
         }
+        long capturers = Bitboard.PAWN_ATTACKS[whiteToMove ? 1 : 0][enPassantSquare]
+                & pieces[whiteToMove ? Piece.WHITE_PAWN.ordinal() : Piece.BLACK_PAWN.ordinal()];
+        return capturers != 0 ? Zobrist.enPassantFile(Bitboard.fileOf(enPassantSquare)) : 0L;
     }
 
-    private void updateEnPassantTarget(Move move, Piece piece) {
-        // Check for double pawn push
-        if ((piece == Piece.WHITE_PAWN || piece == Piece.BLACK_PAWN) &&
-                Math.abs(move.getTo().getRank() - move.getFrom().getRank()) == 2) {
-            int epRank = (move.getFrom().getRank() + move.getTo().getRank()) / 2;
-            enPassantTarget = new Position(move.getFrom().getFile(), epRank);
-        } else {
-            enPassantTarget = null;
+    /**
+     * Computes the Zobrist key from scratch (the incremental key must always match this).
+     */
+    public long computeZobristKey() {
+        long key = 0L;
+        for (int i = 0; i < 12; i++) {
+            long bb = pieces[i];
+            while (bb != 0) {
+                key ^= Zobrist.piece(Piece.fromIndex(i), Long.numberOfTrailingZeros(bb));
+                bb &= bb - 1;
+            }
+        }
+        key ^= Zobrist.castling(castlingRights);
+        if (!whiteToMove) {
+            key ^= Zobrist.blackToMove();
         }
+        return key ^ enPassantKey();
+    }
+
+    /**
+     * Returns the square index of the king for the given color, or NO_SQUARE.
+     */
+    public int getKingSquare(boolean white) {
+        long king = pieces[white ? Piece.WHITE_KING.ordinal() : Piece.BLACK_KING.ordinal()];
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
     }
 
     /**
      * Finds the position of the king for the given color.
      */
     public Position findKing(boolean white) {
-        Piece targetKing = white ? Piece.WHITE_KING : Piece.BLACK_KING;
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                if (squares[row][col] == targetKing) {
-                    return Position.fromArrayIndices(row, col);
-                }
-            }
-        }
-        return null;
+        int square = getKingSquare(white);
+        return square == NO_SQUARE ? null : Position.fromSquare(square);
     }
 
     /**
@@ -232,16 +430,22 @@ public class Board {
         String[] parts = fen.split(" ");
 
         // Piece placement
-        String[] ranks = parts[0].split("/");
-        for (int row = 0; row < 8; row++) {
-            int col = 0;
-            for (char c : ranks[row].toCharArray()) {
-                if (Character.isDigit(c)) {
-                    col += Character.getNumericValue(c);
-                } else {
-                    squares[row][col] = Piece.fromFenChar(c);
-                    col++;
+        String placement = parts[0];
+        int rank = 7;
+        int file = 0;
+        for (int i = 0; i < placement.length(); i++) {
+            char c = placement.charAt(i);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                Piece piece = Piece.fromFenChar(c);
+                if (piece != null && file < 8 && rank >= 0) {
+                    addPiece(piece, Bitboard.square(file, rank));
                 }
+                file++;
             }
         }
 
@@ -253,15 +457,15 @@ public class Board {
         // Castling rights
         if (parts.length > 2) {
             String castling = parts[2];
-            whiteKingsideCastle = castling.contains("K");
-            whiteQueensideCastle = castling.contains("Q");
-            blackKingsideCastle = castling.contains("k");
-            blackQueensideCastle = castling.contains("q");
+            if (castling.indexOf('K') >= 0) castlingRights |= WHITE_KINGSIDE;
+            if (castling.indexOf('Q') >= 0) castlingRights |= WHITE_QUEENSIDE;
+            if (castling.indexOf('k') >= 0) castlingRights |= BLACK_KINGSIDE;
+            if (castling.indexOf('q') >= 0) castlingRights |= BLACK_QUEENSIDE;
         }
 
         // En passant target
         if (parts.length > 3 && !parts[3].equals("-")) {
-            enPassantTarget = Position.fromAlgebraic(parts[3]);
+            enPassantSquare = Position.fromAlgebraic(parts[3]).getSquare();
         }
 
         // Halfmove clock
@@ -273,19 +477,22 @@ public class Board {
         if (parts.length > 5) {
             fullmoveNumber = Integer.parseInt(parts[5]);
         }
+
+        // The stored key leaves out the en passant term
+        zobristKey = computeZobristKey() ^ enPassantKey();
     }
 
     /**
      * Generates the FEN string for the current board state.
      */
     public String toFen() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(90);
 
         // Piece placement
         for (int row = 0; row < 8; row++) {
             int emptyCount = 0;
             for (int col = 0; col < 8; col++) {
-                Piece piece = squares[row][col];
+                Piece piece = pieceAt(Bitboard.fromArrayIndices(row, col));
                 if (piece == null) {
                     emptyCount++;
                 } else {
@@ -311,16 +518,23 @@ public class Board {
         sb.append(' ');
 
         // Castling rights
-        StringBuilder castling = new StringBuilder();
-        if (whiteKingsideCastle) castling.append('K');
-        if (whiteQueensideCastle) castling.append('Q');
-        if (blackKingsideCastle) castling.append('k');
-        if (blackQueensideCastle) castling.append('q');
-        sb.append(castling.length() > 0 ? castling : "-");
+        if (castlingRights == 0) {
+            sb.append('-');
+        } else {
+            if ((castlingRights & WHITE_KINGSIDE) != 0) sb.append('K');
+            if ((castlingRights & WHITE_QUEENSIDE) != 0) sb.append('Q');
+            if ((castlingRights & BLACK_KINGSIDE) != 0) sb.append('k');
+            if ((castlingRights & BLACK_QUEENSIDE) != 0) sb.append('q');
+        }
         sb.append(' ');
 
         // En passant target
-        sb.append(enPassantTarget != null ? enPassantTarget.toAlgebraic() : "-");
+        if (enPassantSquare == NO_SQUARE) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + Bitboard.fileOf(enPassantSquare)));
+            sb.append((char) ('1' + Bitboard.rankOf(enPassantSquare)));
+        }
         sb.append(' ');
 
         // Halfmove clock
@@ -340,7 +554,7 @@ public class Board {
         for (int row = 0; row < 8; row++) {
             sb.append(8 - row).append(" ");
             for (int col = 0; col < 8; col++) {
-                Piece piece = squares[row][col];
+                Piece piece = pieceAt(Bitboard.fromArrayIndices(row, col));
                 sb.append(piece != null ? piece.getFenChar() : '.');
                 sb.append(' ');
             }
@@ -1,6 +1,7 @@
 package com.enkelagon.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -23,7 +24,9 @@ public class Game {
 
     private Board board;
     private final List<Move> moveHistory;
-    private final List<String> fenHistory;
+    private String startFen;
+    private long[] keyHistory; // Zobrist key per position, index = ply
+    private int keyCount;
     private Status status;
     private String whitePlayer;
     private String blackPlayer;
@@ -34,14 +37,15 @@ public class Game {
     public Game() {
         this.board = new Board();
         this.moveHistory = new ArrayList<>();
-        this.fenHistory = new ArrayList<>();
+        this.keyHistory = new long[128];
         this.status = Status.IN_PROGRESS;
         this.whitePlayer = "Human";
         this.blackPlayer = "Stockfish";
         this.event = "Casual Game";
         this.site = "Enkelagon";
         this.date = java.time.LocalDate.now().toString();
-        fenHistory.add(board.toFen());
+        this.startFen = Board.STARTING_FEN;
+        pushKey(board.getZobristKey());
     }
 
     public Board getBoard() {
@@ -122,7 +126,14 @@ public class Game {
     public void makeMove(Move move) {
         board.makeMove(move);
         moveHistory.add(move);
-        fenHistory.add(board.toFen());
+        pushKey(board.getZobristKey());
+    }
+
+    private void pushKey(long key) {
+        if (keyCount == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, keyCount * 2);
+        }
+        keyHistory[keyCount++] = key;
     }
 
     /**
@@ -134,11 +145,8 @@ public class Game {
         }
 
         Move lastMove = moveHistory.remove(moveHistory.size() - 1);
-        fenHistory.remove(fenHistory.size() - 1);
-
-        // Reload board from the previous FEN
-        String previousFen = fenHistory.get(fenHistory.size() - 1);
-        board.loadFromFen(previousFen);
+        keyCount--;
+        board.unmakeMove();
 
         if (status != Status.IN_PROGRESS) {
             status = Status.IN_PROGRESS;
@@ -153,8 +161,9 @@ public class Game {
     public void reset() {
         board.reset();
         moveHistory.clear();
-        fenHistory.clear();
-        fenHistory.add(board.toFen());
+        startFen = Board.STARTING_FEN;
+        keyCount = 0;
+        pushKey(board.getZobristKey());
         status = Status.IN_PROGRESS;
     }
 
@@ -164,8 +173,9 @@ public class Game {
     public void loadFromFen(String fen) {
         board.loadFromFen(fen);
         moveHistory.clear();
-        fenHistory.clear();
-        fenHistory.add(fen);
+        startFen = fen;
+        keyCount = 0;
+        pushKey(board.getZobristKey());
         status = Status.IN_PROGRESS;
     }
 
@@ -176,6 +186,36 @@ public class Game {
         return board.toFen();
     }
 
+    /**
+     * Gets the FEN the game started from (before the first recorded move).
+     */
+    public String getStartFen() {
+        return startFen;
+    }
+
+    /**
+     * Returns the FEN of every position in the game, starting position first.
+     * Positions are not stored as strings; they are rebuilt here by replaying the moves.
+     */
+    public List<String> getFenHistory() {
+        Board replay = new Board();
+        replay.loadFromFen(startFen);
+        List<String> fens = new ArrayList<>(moveHistory.size() + 1);
+        fens.add(replay.toFen());
+        for (Move move : moveHistory) {
+            replay.makeMove(move);
+            fens.add(replay.toFen());
+        }
+        return fens;
+    }
+
+    /**
+     * Gets the current position's Zobrist key.
+     */
+    public long getPositionKey() {
+        return board.getZobristKey();
+    }
+
     /**
      * Returns the move history in algebraic notation for display.
      */
@@ -220,31 +260,22 @@ public class Game {
     }
 
     /**
-     * Checks for threefold repetition.
+     * Checks for threefold repetition. Only positions since the last capture or
+     * pawn move (bounded by the halfmove clock) with the same side to move can repeat.
      */
     public boolean isThreefoldRepetition() {
-        if (fenHistory.size() < 5) return false;
-
-        String currentPosition = extractPositionFromFen(getCurrentFen());
-        int count = 0;
-        for (String fen : fenHistory) {
-            if (extractPositionFromFen(fen).equals(currentPosition)) {
-                count++;
-                if (count >= 3) return true;
+        int current = keyCount - 1;
+        long key = keyHistory[current];
+        int oldest = Math.max(0, current - board.getHalfmoveClock());
+        int count = 1;
+        for (int i = current - 2; i >= oldest; i -= 2) {
+            if (keyHistory[i] == key && ++count >= 3) {
+                return true;
             }
         }
         return false;
     }
 
-    private String extractPositionFromFen(String fen) {
-        // Extract just the position, active color, castling, and en passant (not clocks)
-        String[] parts = fen.split(" ");
-        if (parts.length >= 4) {
-            return parts[0] + " " + parts[1] + " " + parts[2] + " " + parts[3];
-        }
-        return fen;
-    }
-
     /**
      * Checks for fifty-move rule.
      */
@@ -0,0 +1,168 @@
+package com.enkelagon.model;
+
+/**
+ * Compact int encoding of a move for move generation and search.
+ * Layout: bits 0-5 from square, bits 6-11 to square, bits 12-14 promotion
+ * piece type (see {@link Piece#getTypeIndex()}, 0 = none), bit 15 castling,
+ * bit 16 en passant.
+ */
+public final class PackedMove {
+
+    /** Never a valid move (a1a1). */
+    public static final int NONE = 0;
+
+    public static final int FLAG_CASTLING = 1 << 15;
+    public static final int FLAG_EN_PASSANT = 1 << 16;
+
+    private static final int PROMOTION_SHIFT = 12;
+    private static final char[] PROMOTION_CHARS = {' ', 'q', 'r', 'b', 'n'};
+
+    private PackedMove() {
+        // Utility class
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    public static int promotion(int from, int to, int pieceType) {
+        return from | (to << 6) | (pieceType << PROMOTION_SHIFT);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * Returns the promotion piece type index, or 0 if the move is not a promotion.
+     */
+    public static int promotionType(int move) {
+        return (move >>> PROMOTION_SHIFT) & 0x7;
+    }
+
+    public static boolean isPromotion(int move) {
+        return promotionType(move) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & FLAG_CASTLING) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & FLAG_EN_PASSANT) != 0;
+    }
+
+    /**
+     * Returns the move with castling/en passant flags cleared, for comparing against
+     * moves parsed from text.
+     */
+    public static int withoutFlags(int move) {
+        return move & 0x7FFF;
+    }
+
+    /**
+     * Packs a Move, including its castling, en passant and promotion details.
+     */
+    public static int fromMove(Move move) {
+        int packed = of(move.getFrom().getSquare(), move.getTo().getSquare());
+        if (move.isPromotion()) {
+            packed |= move.getPromotionPiece().getTypeIndex() << PROMOTION_SHIFT;
+        }
+        if (move.isCastling()) {
+            packed |= FLAG_CASTLING;
+        }
+        if (move.isEnPassant()) {
+            packed |= FLAG_EN_PASSANT;
+        }
+        return packed;
+    }
+
+    /**
+     * Expands a packed move into a Move for the given position (before the move is made).
+     */
+    public static Move toMove(int move, Board board) {
+        Position from = Position.fromSquare(from(move));
+        Position to = Position.fromSquare(to(move));
+        Piece piece = board.getPieceAt(from);
+
+        Move.Builder builder = new Move.Builder(from, to, piece)
+                .castling(isCastling(move))
+                .enPassant(isEnPassant(move));
+
+        if (isEnPassant(move)) {
+            builder.capturedPiece(board.pieceAt(to(move) + (piece != null && piece.isWhite() ? -8 : 8)));
+        } else {
+            builder.capturedPiece(board.getPieceAt(to));
+        }
+        if (isPromotion(move)) {
+            builder.promotionPiece(Piece.of(promotionType(move), piece == null || piece.isWhite()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses the from/to/promotion part of a UCI move (e.g., "e7e8q") without a board,
+     * so castling and en passant flags are not set. Returns NONE if malformed.
+     */
+    public static int parseUci(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < 4 || length > 5) {
+            return NONE;
+        }
+        int fromFile = text.charAt(start) - 'a';
+        int fromRank = text.charAt(start + 1) - '1';
+        int toFile = text.charAt(start + 2) - 'a';
+        int toRank = text.charAt(start + 3) - '1';
+        if ((fromFile | fromRank | toFile | toRank) < 0 || fromFile > 7 || fromRank > 7 || toFile > 7 || toRank > 7) {
+            return NONE;
+        }
+        int move = of(Bitboard.square(fromFile, fromRank), Bitboard.square(toFile, toRank));
+        if (length == 5) {
+            int type = switch (Character.toLowerCase(text.charAt(start + 4))) {
+                case 'q' -> Piece.QUEEN;
+                case 'r' -> Piece.ROOK;
+                case 'b' -> Piece.BISHOP;
+                case 'n' -> Piece.KNIGHT;
+                default -> 0;
+            };
+            if (type == 0) {
+                return NONE;
+            }
+            move |= type << PROMOTION_SHIFT;
+        }
+        return move;
+    }
+
+    public static int parseUci(CharSequence text) {
+        return parseUci(text, 0, text.length());
+    }
+
+    /**
+     * Appends the UCI notation of a packed move (e.g., "e2e4", "e7e8q").
+     */
+    public static StringBuilder appendUci(StringBuilder sb, int move) {
+        int from = from(move);
+        int to = to(move);
+        sb.append((char) ('a' + Bitboard.fileOf(from))).append((char) ('1' + Bitboard.rankOf(from)));
+        sb.append((char) ('a' + Bitboard.fileOf(to))).append((char) ('1' + Bitboard.rankOf(to)));
+        if (isPromotion(move)) {
+            sb.append(PROMOTION_CHARS[promotionType(move)]);
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the UCI notation of a packed move.
+     */
+    public static String toUci(int move) {
+        return appendUci(new StringBuilder(5), move).toString();
+    }
+}
@@ -17,6 +17,16 @@ public enum Piece {
     BLACK_KNIGHT('n', false, "knight"),
     BLACK_PAWN('p', false, "pawn");
 
+    /** Piece type indices, shared by both colours (see {@link #getTypeIndex()}). */
+    public static final int KING = 0;
+    public static final int QUEEN = 1;
+    public static final int ROOK = 2;
+    public static final int BISHOP = 3;
+    public static final int KNIGHT = 4;
+    public static final int PAWN = 5;
+
+    private static final Piece[] VALUES = values();
+
     private final char fenChar;
     private final boolean white;
     private final String pieceName;
@@ -51,8 +61,36 @@ public enum Piece {
         return getColorName() + "-" + pieceName + ".png";
     }
 
+    /**
+     * Returns the piece type index (KING..PAWN), independent of colour.
+     */
+    public int getTypeIndex() {
+        return ordinal() % 6;
+    }
+
+    /**
+     * Returns the colour index: 0 for white, 1 for black.
+     */
+    public int getColorIndex() {
+        return white ? 0 : 1;
+    }
+
+    /**
+     * Returns the piece for a bitboard index (colour * 6 + type), as used by {@link Board}.
+     */
+    public static Piece fromIndex(int index) {
+        return VALUES[index];
+    }
+
+    /**
+     * Returns the piece of the given type index and colour.
+     */
+    public static Piece of(int typeIndex, boolean white) {
+        return VALUES[(white ? 0 : 6) + typeIndex];
+    }
+
     public static Piece fromFenChar(char c) {
-        for (Piece p : values()) {
+        for (Piece p : VALUES) {
             if (p.fenChar == c) {
                 return p;
             }
@@ -5,6 +5,14 @@ package com.enkelagon.model;
  * File is a-h (0-7), Rank is 1-8 (0-7 internally).
  */
 public class Position {
+    private static final Position[] SQUARES = new Position[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new Position(square & 7, square >>> 3);
+        }
+    }
+
     private final int file; // 0-7 (a-h)
     private final int rank; // 0-7 (1-8)
 
@@ -32,6 +40,23 @@ public class Position {
         return rank + 1;
     }
 
+    /**
+     * Returns the bitboard square index (a1 = 0, h1 = 7, a8 = 56, h8 = 63).
+     */
+    public int getSquare() {
+        return (rank << 3) | file;
+    }
+
+    /**
+     * Returns the shared Position for a bitboard square index (a1 = 0, h8 = 63).
+     */
+    public static Position fromSquare(int square) {
+        if (square < 0 || square > 63) {
+            throw new IllegalArgumentException("Invalid square index: " + square);
+        }
+        return SQUARES[square];
+    }
+
     /**
      * Returns the algebraic notation for this position (e.g., "e4").
      */
@@ -52,14 +77,20 @@ public class Position {
         int file = fileChar - 'a';
         int rank = rankChar - '1';
 
-        return new Position(file, rank);
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            throw new IllegalArgumentException("Invalid position: file=" + file + ", rank=" + rank);
+        }
+        return SQUARES[(rank << 3) | file];
     }
 
     /**
      * Creates a Position from array indices (row 0 = rank 8, row 7 = rank 1).
      */
     public static Position fromArrayIndices(int row, int col) {
-        return new Position(col, 7 - row);
+        if (row < 0 || row > 7 || col < 0 || col > 7) {
+            throw new IllegalArgumentException("Invalid array indices: row=" + row + ", col=" + col);
+        }
+        return SQUARES[((7 - row) << 3) | col];
     }
 
     /**
@@ -0,0 +1,71 @@
+package com.enkelagon.model;
+
+/**
+ * Zobrist hashing tables. Keys are generated from a fixed seed so they stay
+ * stable across runs and JVMs, which lets them be persisted as cache keys.
+ */
+public final class Zobrist {
+
+    /** Piece-square keys, indexed [Piece.ordinal()][square]. */
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    /** Keys for each 4-bit castling rights mask. */
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        long[] state = {0x454E4B454C41474FL}; // "ENKELAGO"
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                PIECE_SQUARE[piece][sq] = nextRandom(state);
+            }
+        }
+        // Castling keys are combined per right so that masks compose by XOR
+        long[] rightKeys = new long[4];
+        for (int i = 0; i < 4; i++) {
+            rightKeys[i] = nextRandom(state);
+        }
+        for (int mask = 0; mask < 16; mask++) {
+            for (int i = 0; i < 4; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    CASTLING[mask] ^= rightKeys[i];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = nextRandom(state);
+        }
+        BLACK_TO_MOVE = nextRandom(state);
+    }
+
+    private Zobrist() {
+        // Utility class
+    }
+
+    /**
+     * SplitMix64 step; spelled out rather than using a JDK generator so the
+     * sequence can never change underneath persisted keys.
+     */
+    private static long nextRandom(long[] state) {
+        long z = (state[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long piece(Piece piece, int square) {
+        return PIECE_SQUARE[piece.ordinal()][square];
+    }
+
+    public static long castling(int rights) {
+        return CASTLING[rights & 0xF];
+    }
+
+    public static long enPassantFile(int file) {
+        return EN_PASSANT_FILE[file];
+    }
+
+    public static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}
@@ -1,6 +1,8 @@
 package com.enkelagon.ui;
 
-import com.enkelagon.engine.StockfishEngine;
+import com.enkelagon.config.ConfigManager;
+import com.enkelagon.engine.AnalysisSnapshot;
+import com.enkelagon.model.PackedMove;
 
 import javax.swing.*;
 import java.awt.*;
@@ -19,12 +21,16 @@ public class AnalysisPanel extends JPanel {
     private final JTextArea pvTextArea;
     private final JLabel npsLabel;
 
+    /** Hands formatted snapshots to the EDT, keeping only the newest. */
+    private final LatestValueMailbox<AnalysisView> mailbox;
+
     private int currentEval = 0;
     private boolean isMate = false;
     private int mateIn = 0;
 
     public AnalysisPanel() {
         this.theme = ThemeManager.getInstance();
+        this.mailbox = new LatestValueMailbox<>(ConfigManager.getInstance().getAnalysisMaxFps(), this::render);
 
         setLayout(new BorderLayout(5, 5));
         setBackground(theme.getBackgroundColor());
@@ -113,66 +119,107 @@ public class AnalysisPanel extends JPanel {
     }
 
     /**
-     * Updates the analysis display with new info.
+     * Shows a completed analysis depth. Text is formatted on the calling (engine) thread;
+     * the EDT only copies the prepared strings into the components, at most maxFps times
+     * per second, skipping snapshots superseded in the meantime.
      */
-    public void updateAnalysis(StockfishEngine.AnalysisInfo info) {
-        if (info == null) return;
+    public void updateAnalysis(AnalysisSnapshot snapshot) {
+        if (snapshot == null || snapshot.getBestLine() == null) return;
 
-        SwingUtilities.invokeLater(() -> {
-            // Update evaluation
-            if (info.isMate) {
-                isMate = true;
-                mateIn = info.mateIn;
-                String mateStr = info.mateIn > 0 ? "M" + info.mateIn : "-M" + Math.abs(info.mateIn);
-                evalLabel.setText(mateStr);
-                evalBar.setValue(info.mateIn > 0 ? 1000 : -1000);
-            } else {
-                isMate = false;
-                currentEval = info.score;
-                double evalValue = info.score / 100.0;
-                String evalStr = String.format("%+.2f", evalValue);
-                evalLabel.setText(evalStr);
-
-                // Clamp for display
-                int barValue = Math.max(-1000, Math.min(1000, info.score));
-                evalBar.setValue(barValue);
-            }
+        mailbox.offer(new AnalysisView(snapshot, theme));
+    }
+
+    private void render(AnalysisView view) {
+        isMate = view.mate;
+        mateIn = view.mateIn;
+        if (!view.mate) {
+            currentEval = view.eval;
+        }
 
-            // Update color based on evaluation
-            if (currentEval > 100 || (isMate && mateIn > 0)) {
-                evalLabel.setForeground(Color.WHITE);
-            } else if (currentEval < -100 || (isMate && mateIn < 0)) {
-                evalLabel.setForeground(theme.getSecondaryColor());
+        evalLabel.setText(view.evalText);
+        evalLabel.setForeground(view.evalColor);
+        evalBar.setValue(view.barValue);
+        depthLabel.setText(view.depthText);
+        if (view.npsText != null) {
+            npsLabel.setText(view.npsText);
+        }
+        if (view.bestMoveText != null) {
+            bestMoveLabel.setText(view.bestMoveText);
+        }
+        pvTextArea.setText(view.pvText);
+    }
+
+    /**
+     * Display-ready text for one snapshot, built off the EDT.
+     */
+    private static final class AnalysisView {
+        final boolean mate;
+        final int mateIn;
+        final int eval;
+        final String evalText;
+        final Color evalColor;
+        final int barValue;
+        final String depthText;
+        final String npsText;
+        final String bestMoveText;
+        final String pvText;
+
+        AnalysisView(AnalysisSnapshot snapshot, ThemeManager theme) {
+            AnalysisSnapshot.Line best = snapshot.getBestLine();
+            mate = best.isMate();
+            mateIn = best.getMateIn();
+            eval = mate ? 0 : best.getScore();
+            evalText = formatScore(best);
+            barValue = mate ? (mateIn > 0 ? 1000 : -1000) : Math.max(-1000, Math.min(1000, eval));
+
+            if (eval > 100 || (mate && mateIn > 0)) {
+                evalColor = Color.WHITE;
+            } else if (eval < -100 || (mate && mateIn < 0)) {
+                evalColor = theme.getSecondaryColor();
             } else {
-                evalLabel.setForeground(theme.getForegroundColor());
+                evalColor = theme.getForegroundColor();
             }
 
-            // Update depth
-            depthLabel.setText("Depth: " + info.depth + "/" + info.selectiveDepth);
+            depthText = "Depth: " + snapshot.getDepth() + "/" + best.getSelectiveDepth();
+            npsText = snapshot.getNps() > 0 ? "NPS: " + formatNps(snapshot.getNps()) : null;
+            bestMoveText = best.getPvLength() > 0 ? "Best: " + PackedMove.toUci(best.getMove()) : null;
+            pvText = formatLines(snapshot);
+        }
+    }
 
-            // Update NPS
-            if (info.nps > 0) {
-                String npsStr = formatNps(info.nps);
-                npsLabel.setText("NPS: " + npsStr);
-            }
+    /**
+     * Update counters (offered, rendered, coalesced) for tuning the frame rate.
+     */
+    public LatestValueMailbox<?> getUpdateStats() {
+        return mailbox;
+    }
 
-            // Update best move
-            if (info.bestMove != null) {
-                bestMoveLabel.setText("Best: " + info.bestMove);
+    /**
+     * One PV per line; with MultiPV each is prefixed by its rank and score.
+     */
+    private static String formatLines(AnalysisSnapshot snapshot) {
+        StringBuilder sb = new StringBuilder(128);
+        boolean multi = snapshot.getLines().size() > 1;
+        for (AnalysisSnapshot.Line line : snapshot.getLines()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
             }
-
-            // Update principal variation
-            if (info.principalVariation != null && info.principalVariation.length > 0) {
-                StringBuilder pv = new StringBuilder();
-                for (int i = 0; i < Math.min(info.principalVariation.length, 10); i++) {
-                    pv.append(info.principalVariation[i]).append(" ");
-                }
-                pvTextArea.setText(pv.toString().trim());
+            if (multi) {
+                sb.append(line.getRank()).append(". ").append(formatScore(line)).append("  ");
             }
-        });
+            line.appendPv(sb, 10);
+        }
+        return sb.toString();
+    }
+
+    private static String formatScore(AnalysisSnapshot.Line line) {
+        if (line.isMate()) {
+            return line.getMateIn() > 0 ? "M" + line.getMateIn() : "-M" + Math.abs(line.getMateIn());
+        }
+        return String.format("%+.2f", line.getScore() / 100.0);
     }
 
-    private String formatNps(int nps) {
+    private static String formatNps(long nps) {
         if (nps >= 1000000) {
             return String.format("%.1fM", nps / 1000000.0);
         } else if (nps >= 1000) {
@@ -185,6 +232,7 @@ public class AnalysisPanel extends JPanel {
      * Clears the analysis display.
      */
     public void clear() {
+        mailbox.clear();
         SwingUtilities.invokeLater(() -> {
             evalLabel.setText("0.00");
             evalLabel.setForeground(theme.getForegroundColor());
@@ -0,0 +1,89 @@
+package com.enkelagon.ui;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Hands values from a background thread to the EDT, keeping only the latest one.
+ * A Swing Timer delivers at most maxFps values per second; anything offered in between
+ * replaces the pending value and is counted as coalesced. The timer stops itself once
+ * there is nothing left to deliver, so an idle mailbox costs nothing.
+ */
+public class LatestValueMailbox<T> {
+
+    private final AtomicReference<T> pending = new AtomicReference<>();
+    private final Consumer<T> renderer;
+    private final Timer timer;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+
+    /**
+     * @param maxFps   upper bound on deliveries per second
+     * @param renderer called on the EDT with the latest value
+     */
+    public LatestValueMailbox(int maxFps, Consumer<T> renderer) {
+        this.renderer = renderer;
+        int intervalMs = Math.max(1, 1000 / Math.max(1, maxFps));
+        this.timer = new Timer(intervalMs, e -> deliver());
+        this.timer.setInitialDelay(0);
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Offers a new value from any thread, replacing one that has not been delivered yet.
+     */
+    public void offer(T value) {
+        offered.incrementAndGet();
+        if (pending.getAndSet(value) != null) {
+            coalesced.incrementAndGet();
+        }
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Drops the pending value, if any (e.g., when the display is cleared).
+     */
+    public void clear() {
+        pending.set(null);
+    }
+
+    private void deliver() {
+        T value = pending.getAndSet(null);
+        if (value == null) {
+            // Idle tick: stop until the next offer. A racing offer restarts the timer.
+            timer.stop();
+            if (pending.get() != null) {
+                timer.restart();
+            }
+            return;
+        }
+        rendered.incrementAndGet();
+        renderer.accept(value);
+    }
+
+    /** Values offered since creation. */
+    public long getOfferedCount() {
+        return offered.get();
+    }
+
+    /** Values replaced before they were rendered. */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /** Values delivered to the renderer. */
+    public long getRenderedCount() {
+        return rendered.get();
+    }
+
+    @Override
+    public String toString() {
+        return "offered=" + offered.get() + ", rendered=" + rendered.get() + ", coalesced=" + coalesced.get();
+    }
+}
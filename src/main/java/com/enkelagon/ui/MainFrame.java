@@ -1,8 +1,14 @@
 package com.enkelagon.ui;
 
+import com.enkelagon.StartupTimeline;
 import com.enkelagon.config.ConfigManager;
 import com.enkelagon.engine.EngineConfig;
-import com.enkelagon.engine.StockfishEngine;
+import com.enkelagon.engine.EngineScheduler;
+import com.enkelagon.engine.EngineSessions;
+import com.enkelagon.engine.EngineWarmup;
+import com.enkelagon.engine.EvalCache;
+import com.enkelagon.engine.UciPosition;
+import com.enkelagon.logic.MoveGenerator;
 import com.enkelagon.logic.MoveValidator;
 import com.enkelagon.logic.PgnHandler;
 import com.enkelagon.model.*;
@@ -17,13 +23,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 /**
  * Main application window.
  */
 public class MainFrame extends JFrame {
 
+    /** A hint still searching after this long is stopped and shows its best move so far. */
+    private static final long HINT_TIMEOUT_MS = 10000;
+
     private final ThemeManager theme;
     private final ConfigManager config;
 
@@ -32,8 +42,13 @@ public class MainFrame extends JFrame {
     private AnalysisPanel analysisPanel;
 
     private Game game;
-    private StockfishEngine engine;
+    private EngineSessions engines;
+    private EngineWarmup warmup;
+    private final StartupTimeline timeline;
+    private boolean firstEngineMove = true;
+    private EvalCache evalCache;
     private MoveValidator validator;
+    private MoveGenerator moveGenerator;
     private PgnHandler pgnHandler;
 
     private Set<String> currentLegalMoves;
@@ -50,16 +65,21 @@ public class MainFrame extends JFrame {
 
     private File lastSavedFile = null;  // Track last save location for quicksave
 
-    public MainFrame() {
+    /**
+     * @param timeline where the first engine move's latency is recorded
+     */
+    public MainFrame(StartupTimeline timeline) {
         super("Enkelagon Chess");
+        this.timeline = timeline;
         this.theme = ThemeManager.getInstance();
         this.config = ConfigManager.getInstance();
         this.game = new Game();
         this.validator = new MoveValidator();
+        this.moveGenerator = new MoveGenerator();
         this.pgnHandler = new PgnHandler();
 
         initializeUI();
-        initializeEngine();
+        updateStatus("Engine starting...");
         updateLegalMoves();
 
         // Show new game dialog on startup
@@ -331,25 +351,44 @@ public class MainFrame extends JFrame {
         });
     }
 
-    private void initializeEngine() {
-        try {
-            engine = new StockfishEngine();
-            engine.setConfig(config.getEngineConfig());
-            engine.start();
+    /**
+     * Takes over engines that have been started and configured off the EDT. If the
+     * engine is to move by now, it starts thinking.
+     */
+    public void engineReady(EngineSessions engines, EngineWarmup warmup, EvalCache evalCache) {
+        this.engines = engines;
+        this.warmup = warmup;
+        this.evalCache = evalCache;
+
+        engines.getAnalysisEngine().setSnapshotCallback(snapshot -> {
+            if (analysisEnabled) {
+                analysisPanel.updateAnalysis(snapshot);
+            }
+        });
 
-            engine.setAnalysisCallback(info -> {
-                if (analysisEnabled) {
-                    analysisPanel.updateAnalysis(info);
-                }
-            });
+        boolean engineToMove = playerIsWhite != game.isWhiteToMove();
+        if (engineToMove && !game.isGameOver()) {
+            engineMove();
+        } else {
+            updateStatus("Engine ready. " + (game.isWhiteToMove() ? "White" : "Black") + " to move.");
+            positionChanged();
+        }
+    }
+
+    public void engineFailed(Throwable error) {
+        error.printStackTrace();
+        updateStatus("Failed to start engine: " + error.getMessage());
+        JOptionPane.showMessageDialog(this,
+                "Failed to start Stockfish engine.\nPlease check that stockfish.exe exists in res/stockfish17/",
+                "Engine Error", JOptionPane.ERROR_MESSAGE);
+    }
 
-            updateStatus("Engine ready. White to move.");
-        } catch (IOException e) {
-            e.printStackTrace();
-            updateStatus("Failed to start engine: " + e.getMessage());
-            JOptionPane.showMessageDialog(this,
-                    "Failed to start Stockfish engine.\nPlease check that stockfish.exe exists in res/stockfish17/",
-                    "Engine Error", JOptionPane.ERROR_MESSAGE);
+    /**
+     * Stops the engine warm-up, if it is still running, so a real search does not wait.
+     */
+    private void cancelWarmUp() {
+        if (warmup != null) {
+            warmup.cancel();
         }
     }
 
@@ -365,6 +404,8 @@ public class MainFrame extends JFrame {
             return;
         }
 
+        cancelWarmUp();
+
         // Build UCI move
         String uciMove = from.toAlgebraic() + to.toAlgebraic();
 
@@ -416,76 +457,126 @@ public class MainFrame extends JFrame {
             boardPanel.highlightCheck(kingPos);
         }
 
-        // Update analysis if enabled
-        if (analysisEnabled && engine != null) {
-            engine.stopAnalysis();
-            engine.startAnalysis(game.getCurrentFen());
+        positionChanged();
+    }
+
+    /**
+     * Drops engine requests about earlier positions and points background analysis (which
+     * runs on its own engine, so play is unaffected) at the current one.
+     */
+    private void positionChanged() {
+        if (engines == null) {
+            return;
         }
+        UciPosition position = UciPosition.of(game);
+        engines.supersede(position);
+        engines.getAnalysisScheduler().setBackgroundAnalysis(analysisEnabled ? position : null);
     }
 
     private void engineMove() {
-        if (engine == null || !engine.isRunning()) {
+        if (engines == null) {
+            // engineReady() makes the move once the engine is up
+            updateStatus("Engine starting...");
+            return;
+        }
+        if (!engines.isRunning()) {
             updateStatus("Engine not available");
             return;
         }
 
+        cancelWarmUp();
         engineThinking = true;
         updateStatus("Stockfish is thinking...");
+        long requested = System.nanoTime();
 
-        String fen = game.getCurrentFen();
+        UciPosition position = UciPosition.of(game);
 
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return engine.getBestMove(fen);
-            } catch (IOException e) {
-                e.printStackTrace();
-                return null;
-            }
-        }).thenAccept(bestMove -> {
+        // If the engine pondered on this position, search() turns it into a ponderhit
+        engines.getPlayScheduler().submit(EngineScheduler.Priority.ENGINE_MOVE, position, 0,
+                playEngine -> playEngine.search(position, playEngine.getConfig().getGoCommand()).join()
+        ).handle((result, error) -> {
             SwingUtilities.invokeLater(() -> {
                 engineThinking = false;
+                if (error instanceof CancellationException) {
+                    // Superseded by a new game or loaded PGN
+                    return;
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                }
 
+                if (firstEngineMove) {
+                    firstEngineMove = false;
+                    recordFirstMove(requested, System.nanoTime());
+                }
+
+                String bestMove = result != null ? result.bestMove() : null;
                 if (bestMove != null && !game.isGameOver()) {
                     Move move = Move.fromUci(bestMove, game.getBoard());
                     executeMove(move);
-                    checkGameEnd();
+                    if (!checkGameEnd()) {
+                        startPondering(result.ponder());
+                    }
                 } else {
                     updateStatus("Engine error or game over");
                 }
             });
+            return null;
         });
     }
 
-    private void updateLegalMoves() {
-        if (engine == null || !engine.isRunning()) {
-            currentLegalMoves = Set.of();
-            validator.setLegalMoves(currentLegalMoves);
-            boardPanel.setLegalMoves(currentLegalMoves);
-            return;
+    /**
+     * Records the first engine move, the one that used to pay for the engine's start-up
+     * costs, in the startup timeline together with whether a warm-up ran before it.
+     */
+    private void recordFirstMove(long startNanos, long endNanos) {
+        String warmUpState;
+        if (warmup == null) {
+            warmUpState = "no warm-up";
+        } else if (warmup.isCompleted()) {
+            warmUpState = "after warm-up";
+        } else {
+            warmUpState = "warm-up cut short";
         }
+        timeline.addPhase("first engine move, " + warmUpState, startNanos, endNanos);
+        timeline.printIfEnabled();
+    }
 
-        String fen = game.getCurrentFen();
-
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return engine.getLegalMoves(fen);
-            } catch (IOException e) {
-                e.printStackTrace();
-                return Set.<String>of();
-            }
-        }).thenAccept(moves -> {
-            SwingUtilities.invokeLater(() -> {
-                currentLegalMoves = moves;
-                validator.setLegalMoves(currentLegalMoves);
-                boardPanel.setLegalMoves(currentLegalMoves);
+    /**
+     * Lets the play engine think on the player's time about the reply it expects.
+     */
+    private void startPondering(String ponderMove) {
+        if (engines != null && engines.getPlayEngine().getConfig().isPonder()) {
+            UciPosition position = UciPosition.of(game);
+            engines.getPlayScheduler().submit(EngineScheduler.Priority.PONDER, position, 0, playEngine -> {
+                playEngine.ponder(position, ponderMove);
+                return null;
             });
-        });
+        }
+    }
+
+    /**
+     * Stops pondering on a position the game has left. Queued with the current position,
+     * so it also drops a ponder request that has not started yet.
+     */
+    private void stopPondering() {
+        if (engines != null) {
+            engines.getPlayScheduler().submit(EngineScheduler.Priority.PONDER, UciPosition.of(game), 0,
+                    playEngine -> {
+                        playEngine.stopPonder();
+                        return null;
+                    });
+        }
+    }
+
+    private void updateLegalMoves() {
+        currentLegalMoves = moveGenerator.getLegalMoves(game.getBoard());
+        validator.setLegalMoves(currentLegalMoves);
+        boardPanel.setLegalMoves(currentLegalMoves);
     }
 
     private boolean isInCheck() {
-        // Simple heuristic: if king is attacked
-        // For proper implementation, would need to check if any opponent piece attacks king
-        return false; // Simplified - engine handles this
+        return moveGenerator.isInCheck(game.getBoard());
     }
 
     private boolean checkGameEnd() {
@@ -572,13 +663,14 @@ public class MainFrame extends JFrame {
     }
 
     private void startNewGame(boolean playAsWhite) {
-        if (engine != null) {
-            engine.stopAnalysis();
+        if (engines != null) {
+            engines.getAnalysisScheduler().setBackgroundAnalysis(null);
         }
 
         this.playerIsWhite = playAsWhite;
 
         game.reset();
+        notifyEngineNewGame();
         game.setWhitePlayer(playAsWhite ? "You" : "Stockfish");
         game.setBlackPlayer(playAsWhite ? "Stockfish" : "You");
 
@@ -597,6 +689,7 @@ public class MainFrame extends JFrame {
 
         engineThinking = false;
         updateLegalMoves();
+        positionChanged();
 
         String colorStr = playAsWhite ? "White" : "Black";
         updateStatus("New game. You play as " + colorStr + ". White to move.");
@@ -607,6 +700,20 @@ public class MainFrame extends JFrame {
         }
     }
 
+    /**
+     * Clears the engines' hash and history; searches within a game then share one root.
+     */
+    private void notifyEngineNewGame() {
+        if (engines != null && engines.isRunning()) {
+            // Stop the old game's searches, so the reset does not wait for them
+            engines.supersede(UciPosition.of(game));
+            engines.newGame().exceptionally(error -> {
+                error.printStackTrace();
+                return null;
+            });
+        }
+    }
+
     private void undoMove() {
         if (engineThinking) return;
 
@@ -627,10 +734,8 @@ public class MainFrame extends JFrame {
         updateLegalMoves();
         updateTurnStatus();
 
-        if (analysisEnabled && engine != null) {
-            engine.stopAnalysis();
-            engine.startAnalysis(game.getCurrentFen());
-        }
+        positionChanged();
+        stopPondering();
     }
 
     private void flipBoard() {
@@ -640,11 +745,14 @@ public class MainFrame extends JFrame {
     private void toggleAnalysis() {
         analysisEnabled = analysisBtn.isSelected();
 
-        if (analysisEnabled && engine != null && engine.isRunning()) {
+        if (engines == null) {
+            return;
+        }
+        if (analysisEnabled && engines.isRunning()) {
             analysisPanel.setAnalyzing(true);
-            engine.startAnalysis(game.getCurrentFen());
-        } else if (engine != null) {
-            engine.stopAnalysis();
+            engines.getAnalysisScheduler().setBackgroundAnalysis(UciPosition.of(game));
+        } else {
+            engines.getAnalysisScheduler().setBackgroundAnalysis(null);
             analysisPanel.clear();
         }
     }
@@ -662,7 +770,7 @@ public class MainFrame extends JFrame {
             return;
         }
 
-        if (engine == null || !engine.isRunning()) {
+        if (engines == null || !engines.isRunning()) {
             updateStatus("Engine not available for hints.");
             return;
         }
@@ -670,18 +778,23 @@ public class MainFrame extends JFrame {
         updateStatus("Calculating best move...");
         hintBtn.setEnabled(false);
 
-        String fen = game.getCurrentFen();
+        // Hints come from the analysis engine so a pondering play engine is left alone;
+        // background analysis pauses for the hint and resumes afterwards
+        UciPosition position = UciPosition.of(game);
+        String goCommand = engines.getAnalysisEngine().getConfig().getGoCommand();
 
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return engine.getBestMove(fen);
-            } catch (IOException e) {
-                e.printStackTrace();
-                return null;
-            }
-        }).thenAccept(bestMove -> {
+        engines.getAnalysisScheduler().search(EngineScheduler.Priority.HINT, position, goCommand, HINT_TIMEOUT_MS)
+                .handle((result, error) -> {
+            String bestMove = result != null ? result.bestMove() : null;
             SwingUtilities.invokeLater(() -> {
                 hintBtn.setEnabled(true);
+                if (error instanceof CancellationException) {
+                    // The position changed before the hint arrived
+                    return;
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                }
                 if (bestMove != null) {
                     boardPanel.highlightSuggestedMove(bestMove);
                     updateStatus("Suggested move: " + bestMove + " (highlighted in green)");
@@ -689,6 +802,7 @@ public class MainFrame extends JFrame {
                     updateStatus("Could not calculate hint.");
                 }
             });
+            return null;
         });
     }
 
@@ -706,12 +820,14 @@ public class MainFrame extends JFrame {
             try {
                 Game loadedGame = pgnHandler.loadFromFile(file.toPath());
                 this.game = loadedGame;
+                notifyEngineNewGame();
                 lastSavedFile = file;  // Remember for quicksave
                 boardPanel.setBoard(game.getBoard());
                 boardPanel.updatePieces();
                 moveHistoryPanel.updateFromMoves(game.getMoveHistory());
                 updateLegalMoves();
                 updateTurnStatus();
+                positionChanged();
                 updateStatus("Loaded: " + file.getName());
             } catch (IOException e) {
                 JOptionPane.showMessageDialog(this,
@@ -768,11 +884,22 @@ public class MainFrame extends JFrame {
     }
 
     private void showSettings() {
-        SettingsDialog dialog = new SettingsDialog(this);
+        SettingsDialog dialog = new SettingsDialog(this, engines);
         dialog.setVisible(true);
 
-        if (dialog.wasApplied() && engine != null) {
-            engine.setConfig(dialog.getEngineConfig());
+        if (dialog.wasApplied() && engines != null) {
+            // Applied by the schedulers: the engines may have to finish a search and reallocate
+            engines.applyConfig(dialog.getEngineConfig()).exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof IllegalArgumentException) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, cause.getMessage(),
+                            "Engine Settings", JOptionPane.ERROR_MESSAGE));
+                } else {
+                    cause.printStackTrace();
+                }
+                return null;
+            });
         }
     }
 
@@ -792,8 +919,11 @@ public class MainFrame extends JFrame {
             animatedBackground.stop();
         }
 
-        if (engine != null) {
-            engine.shutdown();
+        if (engines != null) {
+            engines.shutdown();
+        }
+        if (evalCache != null) {
+            evalCache.close();
         }
 
         // Save window state
@@ -2,10 +2,16 @@ package com.enkelagon.ui;
 
 import com.enkelagon.config.ConfigManager;
 import com.enkelagon.engine.EngineConfig;
+import com.enkelagon.engine.EngineSessions;
+import com.enkelagon.engine.EngineTuner;
+import com.enkelagon.engine.HardwareProfile;
 
 import javax.swing.*;
 import javax.swing.event.ChangeListener;
 import java.awt.*;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Dialog for configuring AI settings and application preferences.
@@ -14,13 +20,16 @@ public class SettingsDialog extends JDialog {
 
     private final ConfigManager config;
     private final ThemeManager theme;
+    private final EngineSessions engines;
 
     private JComboBox<String> presetCombo;
     private JSlider skillSlider;
     private JSlider depthSlider;
     private JSpinner threadsSpinner;
     private JSpinner hashSpinner;
+    private JButton autoTuneButton;
     private JSpinner moveTimeSpinner;
+    private JCheckBox ponderCheck;
 
     private JCheckBox showCoordsCheck;
     private JCheckBox animateMovesCheck;
@@ -30,10 +39,14 @@ public class SettingsDialog extends JDialog {
 
     private boolean applied = false;
 
-    public SettingsDialog(Frame parent) {
+    /**
+     * @param engines the running engines, paused while auto-tune benchmarks; null if none
+     */
+    public SettingsDialog(Frame parent, EngineSessions engines) {
         super(parent, "Settings", true);
         this.config = ConfigManager.getInstance();
         this.theme = ThemeManager.getInstance();
+        this.engines = engines;
 
         setSize(450, 500);
         setLocationRelativeTo(parent);
@@ -161,9 +174,17 @@ public class SettingsDialog extends JDialog {
         hashSpinner = new JSpinner(new SpinnerNumberModel(256, 16, 4096, 64));
         panel.add(hashSpinner, gbc);
 
+        // Auto-tune
+        gbc.gridx = 1;
+        gbc.gridy = 5;
+        autoTuneButton = theme.createButton("Auto-tune for this machine");
+        autoTuneButton.setToolTipText(HardwareProfile.get().toString());
+        autoTuneButton.addActionListener(e -> runAutoTune());
+        panel.add(autoTuneButton, gbc);
+
         // Move time
         gbc.gridx = 0;
-        gbc.gridy = 5;
+        gbc.gridy = 6;
         gbc.weightx = 0;
         panel.add(theme.createLabel("Move Time (ms):"), gbc);
 
@@ -172,9 +193,19 @@ public class SettingsDialog extends JDialog {
         moveTimeSpinner = new JSpinner(new SpinnerNumberModel(1000, 100, 30000, 100));
         panel.add(moveTimeSpinner, gbc);
 
+        // Ponder
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        gbc.gridwidth = 2;
+        ponderCheck = new JCheckBox("Ponder on your time");
+        ponderCheck.setBackground(theme.getBackgroundColor());
+        ponderCheck.setForeground(theme.getForegroundColor());
+        panel.add(ponderCheck, gbc);
+        gbc.gridwidth = 1;
+
         // Spacer
         gbc.gridx = 0;
-        gbc.gridy = 6;
+        gbc.gridy = 8;
         gbc.weighty = 1;
         panel.add(Box.createVerticalGlue(), gbc);
 
@@ -256,6 +287,45 @@ public class SettingsDialog extends JDialog {
         return panel;
     }
 
+    /**
+     * Benchmarks the engine in the background and fills in the Threads and Hash it found.
+     * The game's engines are paused meanwhile, so their searches do not skew the numbers.
+     */
+    private void runAutoTune() {
+        autoTuneButton.setEnabled(false);
+        autoTuneButton.setText("Tuning...");
+        CompletableFuture<Runnable> paused = engines != null
+                ? engines.pause() : CompletableFuture.completedFuture(() -> { });
+        // Minutes of blocking bench runs: a thread of its own, not the common pool
+        paused.thenApplyAsync(resume -> {
+            try {
+                return new EngineTuner().tune();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                resume.run();
+            }
+        }, runnable -> {
+            Thread thread = new Thread(runnable, "engine-auto-tune");
+            thread.setDaemon(true);
+            thread.start();
+        }).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            autoTuneButton.setEnabled(true);
+            autoTuneButton.setText("Auto-tune for this machine");
+            if (error != null) {
+                JOptionPane.showMessageDialog(this,
+                        "Auto-tune failed: " + (error.getCause() != null ? error.getCause() : error).getMessage(),
+                        "Auto-tune", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            config.setEngineTuning(result);
+            threadsSpinner.setValue(result.threads());
+            hashSpinner.setValue(result.hashMB());
+            autoTuneButton.setToolTipText(String.format("%s: %,d nodes/s, %,d MB",
+                    result.hostKey(), result.nodesPerSecond(), result.peakRssMB()));
+        }));
+    }
+
     private void onPresetChanged() {
         String selected = (String) presetCombo.getSelectedItem();
         if (selected == null || selected.equals("Custom")) return;
@@ -294,6 +364,7 @@ public class SettingsDialog extends JDialog {
         threadsSpinner.setValue(engineConfig.getThreads());
         hashSpinner.setValue(engineConfig.getHashMB());
         moveTimeSpinner.setValue(engineConfig.getMoveTimeMs());
+        ponderCheck.setSelected(engineConfig.isPonder());
 
         // Board settings
         showCoordsCheck.setSelected(config.isShowCoordinates());
@@ -311,6 +382,7 @@ public class SettingsDialog extends JDialog {
         engineConfig.setThreads((Integer) threadsSpinner.getValue());
         engineConfig.setHashMB((Integer) hashSpinner.getValue());
         engineConfig.setMoveTimeMs((Integer) moveTimeSpinner.getValue());
+        engineConfig.setPonder(ponderCheck.isSelected());
 
         String preset = (String) presetCombo.getSelectedItem();
         if (preset != null && !preset.equals("Custom")) {
@@ -321,6 +393,10 @@ public class SettingsDialog extends JDialog {
             }
         }
 
+        // Keep following the tuning results unless Threads or Hash were changed by hand
+        EngineTuner.Result tuning = config.getEngineTuning(HardwareProfile.get().getHostKey());
+        config.setEngineAutoTune(tuning == null || (tuning.threads() == engineConfig.getThreads()
+                && tuning.hashMB() == engineConfig.getHashMB()));
         config.setEngineConfig(engineConfig);
 
         // Board settings
@@ -345,6 +421,7 @@ public class SettingsDialog extends JDialog {
         engineConfig.setThreads((Integer) threadsSpinner.getValue());
         engineConfig.setHashMB((Integer) hashSpinner.getValue());
         engineConfig.setMoveTimeMs((Integer) moveTimeSpinner.getValue());
+        engineConfig.setPonder(ponderCheck.isSelected());
         return engineConfig;
     }
 }